@@ -0,0 +1,18 @@
+package org.genericsystem.api.core.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the instances of a generic are indexed by value : getInstance(value) does not scan all the instances.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE })
+public @interface ValueIndex {
+
+}
@@ -39,6 +39,10 @@ public interface DefaultContext<T extends DefaultVertex<T>> extends IContext<T>
 		return getDependencies(vertex).filter(x -> vertex.equals(x.getMeta()));
 	}
 
+	default Snapshot<T> getInstances(T vertex, Serializable value) {
+		return getInstances(vertex).filter(DefaultDependencies.valueFilter(value));
+	}
+
 	default Snapshot<T> getInheritings(T vertex) {
 		return getDependencies(vertex).filter(x -> x.getSupers().contains(vertex));
 	}
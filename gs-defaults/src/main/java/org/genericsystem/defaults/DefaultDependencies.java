@@ -57,7 +57,7 @@ public interface DefaultDependencies<T extends DefaultVertex<T>> extends IVertex
 	@SuppressWarnings("unchecked")
 	@Override
 	default Snapshot<T> getInstances(Serializable value, T... components) {
-		return getInstances(components).filter(valueFilter(value));
+		return getCurrentCache().getInstances((T) this, value).filter(componentsFilter(components));
 	}
 
 	@SuppressWarnings("unchecked")
@@ -1,5 +1,9 @@
 package org.genericsystem.cache;
 
+import java.io.Serializable;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import org.genericsystem.api.core.Snapshot;
 import org.genericsystem.api.core.exceptions.CacheNoStartedException;
 import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
@@ -7,7 +11,6 @@ import org.genericsystem.api.core.exceptions.OptimisticLockConstraintViolationEx
 import org.genericsystem.api.core.exceptions.RollbackException;
 import org.genericsystem.kernel.Context;
 import org.genericsystem.kernel.Generic;
-import org.genericsystem.kernel.Statics;
 
 public class Cache extends Context {
 
@@ -28,6 +31,7 @@ public class Cache extends Context {
 		super(subContext.getRoot());
 		this.listener = listener;
 		this.transaction = subContext;
+		getRoot().getActiveContexts().register(this, getTs());
 		initialize();
 	}
 
@@ -37,8 +41,23 @@ public class Cache extends Context {
 	}
 
 	@Override
-	public Snapshot<Generic> getDependencies(Generic vertex) {
-		return cacheElement.getDependencies(vertex);
+	public Snapshot<Generic> getInstances(Generic vertex) {
+		return cacheElement.getInstances(vertex);
+	}
+
+	@Override
+	public Snapshot<Generic> getInstances(Generic vertex, Serializable value) {
+		return cacheElement.getInstances(vertex, value);
+	}
+
+	@Override
+	public Snapshot<Generic> getInheritings(Generic vertex) {
+		return cacheElement.getInheritings(vertex);
+	}
+
+	@Override
+	public Snapshot<Generic> getComposites(Generic vertex) {
+		return cacheElement.getComposites(vertex);
 	}
 
 	protected void initialize() {
@@ -46,10 +65,15 @@ public class Cache extends Context {
 	}
 
 	public void shiftTs() throws RollbackException {
-		transaction = new Transaction(getRoot(), getRoot().pickNewTs());
+		transaction = buildTransaction(getRoot().pickNewTs());
+		getRoot().getActiveContexts().register(this, getTs());
 		listener.triggersRefreshEvent();
 	}
 
+	protected Transaction buildTransaction(long ts) {
+		return new Transaction(getRoot(), ts);
+	}
+
 	public void tryFlush() throws ConcurrencyControlException {
 		if (!equals(getRoot().getCurrentCache()))
 			discardWithException(new CacheNoStartedException("The Cache isn't started"));
@@ -64,8 +88,11 @@ public class Cache extends Context {
 	}
 
 	public void flush() {
+		RetryPolicy retryPolicy = getRoot().getRetryPolicy();
+		getRoot().getConcurrencyMetrics().onFlush();
+		long start = System.currentTimeMillis();
 		Throwable cause = null;
-		for (int attempt = 0; attempt < Statics.ATTEMPTS; attempt++) {
+		for (int attempt = 0; attempt < retryPolicy.getMaxAttempts(); attempt++) {
 			try {
 				// TODO reactivate this
 				// if (getEngine().pickNewTs() - getTs() >= timeOut)
@@ -74,34 +101,41 @@ public class Cache extends Context {
 				return;
 			} catch (ConcurrencyControlException e) {
 				cause = e;
+				long delay = retryPolicy.getDelay(attempt);
+				if (System.currentTimeMillis() - start + delay > retryPolicy.getMaxElapsedTime())
+					break;
 				try {
-					Thread.sleep(Statics.ATTEMPT_SLEEP);
-					shiftTs();
+					Thread.sleep(delay);
 				} catch (InterruptedException ex) {
 					discardWithException(ex);
 				}
+				getRoot().getConcurrencyMetrics().onRetry();
+				rebase();
 			}
 		}
 		discardWithException(cause);
 	}
 
+	// Moves the cache to a new ts : only a concurrent remove of the generics it removes or extends is a real conflict
+	private void rebase() {
+		shiftTs();
+		List<Generic> conflicts = cacheElement.getConflicts();
+		if (!conflicts.isEmpty())
+			discardWithException(new OptimisticLockConstraintViolationException("Concurrent remove of : " + conflicts.stream().map(Generic::info).collect(Collectors.joining(", "))));
+	}
+
 	protected void doSynchronizedApplyInSubContext() throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
 		Differential originalCacheElement = this.cacheElement;
 		if (this.cacheElement.getSubCache() instanceof Differential)
 			this.cacheElement = (Differential) this.cacheElement.getSubCache();
 		try {
-			synchronizedApply(originalCacheElement);
+			// No global lock : the transaction write locks the generics it touches, in ts order
+			originalCacheElement.apply();
 		} finally {
 			this.cacheElement = originalCacheElement;
 		}
 	}
 
-	private void synchronizedApply(Differential cacheElement) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
-		synchronized (getRoot()) {
-			cacheElement.apply();
-		}
-	}
-
 	public void clear() {
 		initialize();
 		listener.triggersClearEvent();
@@ -112,6 +146,71 @@ public class Cache extends Context {
 		cacheElement = new Differential(cacheElement);
 	}
 
+	/**
+	 * Marks the current state of the cache : the changes done after it can be discarded by {@link #rollbackTo(Savepoint)} without clearing the whole cache. A savepoint is a mounted layer of the cache.
+	 */
+	public Savepoint savepoint(String name) {
+		mount();
+		return new Savepoint(name, cacheElement);
+	}
+
+	public Savepoint savepoint() {
+		return savepoint(null);
+	}
+
+	/**
+	 * Discards the changes done since the savepoint, the savepoints taken after it are released. The savepoint remains usable.
+	 */
+	public void rollbackTo(Savepoint savepoint) {
+		checkSavepoint(savepoint);
+		cacheElement = savepoint.layer = new Differential(savepoint.layer.getSubCache());
+		listener.triggersClearEvent();
+		listener.triggersRefreshEvent();
+	}
+
+	/**
+	 * Keeps the changes done since the savepoint in the layer below it, the savepoint and the ones taken after it are released.
+	 */
+	public void release(Savepoint savepoint) {
+		checkSavepoint(savepoint);
+		try {
+			for (Differential layer = cacheElement; layer != savepoint.layer; layer = (Differential) layer.getSubCache())
+				layer.apply();
+			savepoint.layer.apply();
+		} catch (ConcurrencyControlException | OptimisticLockConstraintViolationException e) {
+			discardWithException(e);
+		}
+		cacheElement = (Differential) savepoint.layer.getSubCache();
+		savepoint.layer = null;
+	}
+
+	private void checkSavepoint(Savepoint savepoint) {
+		for (IDifferential layer = cacheElement; layer instanceof Differential; layer = ((Differential) layer).getSubCache())
+			if (layer == savepoint.layer)
+				return;
+		throw new IllegalStateException("Unknown or released savepoint : " + savepoint);
+	}
+
+	public static class Savepoint {
+
+		private final String name;
+		private Differential layer;
+
+		private Savepoint(String name, Differential layer) {
+			this.name = name;
+			this.layer = layer;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String toString() {
+			return name != null ? name : super.toString();
+		}
+	}
+
 	public void unmount() {
 		IDifferential subCache = cacheElement.getSubCache();
 		cacheElement = subCache instanceof Differential ? (Differential) subCache : new Differential(subCache);
@@ -124,12 +223,17 @@ public class Cache extends Context {
 		return (Engine) super.getRoot();
 	}
 
+	// A cache restarted after the garbage collector has passed its ts may not see the versions it read : it goes on at a new ts
 	public Cache start() {
+		if (!getRoot().getActiveContexts().reregister(this, getTs()))
+			shiftTs();
 		return getRoot().start(this);
 	}
 
+	// A stopped cache does not hold the garbage collection back until it is restarted
 	public void stop() {
 		getRoot().stop(this);
+		getRoot().getActiveContexts().unregister(this);
 	}
 
 	@Override
@@ -169,7 +273,10 @@ public class Cache extends Context {
 
 		@Override
 		public void apply(Iterable<Generic> removes, Iterable<Generic> adds) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
-			transaction.apply(removes, adds);
+			if (getRoot().isGroupCommit())
+				getRoot().getGroupCommitter().commit(transaction, removes, adds);
+			else
+				transaction.apply(removes, adds);
 		}
 
 		@Override
@@ -178,8 +285,23 @@ public class Cache extends Context {
 		}
 
 		@Override
-		public Snapshot<Generic> getDependencies(Generic vertex) {
-			return transaction.getDependencies(vertex);
+		public Snapshot<Generic> getInstances(Generic vertex) {
+			return transaction.getInstances(vertex);
+		}
+
+		@Override
+		public Snapshot<Generic> getInstances(Generic vertex, Serializable value) {
+			return transaction.getInstances(vertex, value);
+		}
+
+		@Override
+		public Snapshot<Generic> getInheritings(Generic vertex) {
+			return transaction.getInheritings(vertex);
+		}
+
+		@Override
+		public Snapshot<Generic> getComposites(Generic vertex) {
+			return transaction.getComposites(vertex);
 		}
 	}
 
@@ -1,6 +1,19 @@
 package org.genericsystem.cache;
 
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.genericsystem.api.core.Snapshot;
 import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
@@ -14,6 +27,12 @@ public class Differential implements IDifferential {
 	private final IDifferential differential;
 	private final PseudoConcurrentCollection<Generic> adds = new PseudoConcurrentCollection<>();
 	private final PseudoConcurrentCollection<Generic> removes = new PseudoConcurrentCollection<>();
+	// The adds by ancestor : a query reads the adds of its ancestor only
+	private final Map<Generic, PseudoConcurrentCollection<Generic>> addedInstances = new HashMap<>();
+	private final Map<Generic, PseudoConcurrentCollection<Generic>> addedInheritings = new HashMap<>();
+	private final Map<Generic, PseudoConcurrentCollection<Generic>> addedComposites = new HashMap<>();
+	// The adds by meta and value, for the lookups by value
+	private final Map<Generic, Map<Serializable, PseudoConcurrentCollection<Generic>>> addedInstancesByValue = new HashMap<>();
 
 	public Differential(IDifferential subCache) {
 		this.differential = subCache;
@@ -37,30 +56,126 @@ public class Differential implements IDifferential {
 		removes.forEach(x -> checker.checkAfterBuild(false, true, x));
 	}
 
+	// The generics removed or extended by this differential that are not alive anymore below it
+	List<Generic> getConflicts() {
+		Set<Generic> touched = new LinkedHashSet<>();
+		removes.forEach(touched::add);
+		adds.forEach(add -> {
+			if (!add.isMeta())
+				touched.add(add.getMeta());
+			touched.addAll(add.getSupers());
+			touched.addAll(add.getComponents());
+		});
+		return touched.stream().filter(generic -> !adds.contains(generic) && !differential.isAlive(generic)).collect(Collectors.toList());
+	}
+
 	protected Generic plug(Generic generic) {
 		adds.add(generic);
+		if (!generic.isMeta()) {
+			getAdded(addedInstances, generic.getMeta()).add(generic);
+			getAdded(addedInstancesByValue.computeIfAbsent(generic.getMeta(), x -> new HashMap<>()), generic.getValue()).add(generic);
+		}
+		generic.getSupers().forEach(superT -> getAdded(addedInheritings, superT).add(generic));
+		generic.getComponents().stream().distinct().forEach(component -> getAdded(addedComposites, component).add(generic));
 		return generic;
 	}
 
 	protected void unplug(Generic generic) {
-		if (!adds.remove(generic))
+		if (!adds.remove(generic)) {
 			removes.add(generic);
+			return;
+		}
+		if (!generic.isMeta()) {
+			removeAdded(addedInstances, generic.getMeta(), generic);
+			Map<Serializable, PseudoConcurrentCollection<Generic>> addedByValue = addedInstancesByValue.get(generic.getMeta());
+			if (addedByValue != null)
+				removeAdded(addedByValue, generic.getValue(), generic);
+		}
+		generic.getSupers().forEach(superT -> removeAdded(addedInheritings, superT, generic));
+		generic.getComponents().stream().distinct().forEach(component -> removeAdded(addedComposites, component, generic));
+	}
+
+	// Only a plug allocates the adds of an ancestor : the reads of the ancestors without adds allocate nothing
+	private static <K> PseudoConcurrentCollection<Generic> getAdded(Map<K, PseudoConcurrentCollection<Generic>> added, K key) {
+		return added.computeIfAbsent(key, x -> new PseudoConcurrentCollection<>());
+	}
+
+	private static <K> void removeAdded(Map<K, PseudoConcurrentCollection<Generic>> added, K key, Generic generic) {
+		PseudoConcurrentCollection<Generic> adds = added.get(key);
+		if (adds != null)
+			adds.remove(generic);
+	}
+
+	private static <K> Stream<Generic> streamAdded(Map<K, PseudoConcurrentCollection<Generic>> added, K key) {
+		return streamAdded(() -> added.get(key));
+	}
+
+	private Stream<Generic> streamAddedInstances(Generic meta, Serializable value) {
+		return streamAdded(() -> {
+			Map<Serializable, PseudoConcurrentCollection<Generic>> addedByValue = addedInstancesByValue.get(meta);
+			return addedByValue != null ? addedByValue.get(value) : null;
+		});
+	}
+
+	// The adds are looked up when the iteration reaches them : it sees the adds made after its start
+	private static Stream<Generic> streamAdded(Supplier<PseudoConcurrentCollection<Generic>> added) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<Generic>() {
+			private Iterator<Generic> iterator;
+
+			private Iterator<Generic> getIterator() {
+				if (iterator == null) {
+					PseudoConcurrentCollection<Generic> adds = added.get();
+					iterator = adds != null ? adds.iterator() : Collections.emptyIterator();
+				}
+				return iterator;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return getIterator().hasNext();
+			}
+
+			@Override
+			public Generic next() {
+				return getIterator().next();
+			}
+		}, 0), false);
 	}
 
 	@Override
-	public Snapshot<Generic> getDependencies(Generic generic) {
+	public Snapshot<Generic> getInstances(Generic generic) {
+		return getDependencies(generic, subCache -> subCache.getInstances(generic), addedInstances);
+	}
+
+	@Override
+	public Snapshot<Generic> getInstances(Generic generic, Serializable value) {
+		return () -> Stream.concat(differential.getInstances(generic, value).stream().filter(x -> !removes.contains(x)), streamAddedInstances(generic, value));
+	}
+
+	@Override
+	public Snapshot<Generic> getInheritings(Generic generic) {
+		return getDependencies(generic, subCache -> subCache.getInheritings(generic), addedInheritings);
+	}
+
+	@Override
+	public Snapshot<Generic> getComposites(Generic generic) {
+		return getDependencies(generic, subCache -> subCache.getComposites(generic), addedComposites);
+	}
+
+	private Snapshot<Generic> getDependencies(Generic generic, Function<IDifferential, Snapshot<Generic>> subDependencies, Map<Generic, PseudoConcurrentCollection<Generic>> added) {
 		return new Snapshot<Generic>() {
 			@Override
 			public Generic get(Object o) {
-				Generic result = adds.get(o);
+				PseudoConcurrentCollection<Generic> adds = added.get(generic);
+				Generic result = adds != null ? adds.get(o) : null;
 				if (result != null)
-					return generic.isDirectAncestorOf(result) ? result : null;
-				return !removes.contains(o) ? differential.getDependencies(generic).get(o) : null;
+					return result;
+				return !removes.contains(o) ? subDependencies.apply(differential).get(o) : null;
 			}
 
 			@Override
 			public Stream<Generic> stream() {
-				return Stream.concat(differential.getDependencies(generic).stream().filter(x -> !removes.contains(x)), adds.stream().filter(x -> generic.isDirectAncestorOf(x)));
+				return Stream.concat(subDependencies.apply(differential).stream().filter(x -> !removes.contains(x)), streamAdded(added, generic));
 			}
 		};
 	}
@@ -3,6 +3,7 @@ package org.genericsystem.cache;
 import java.io.Serializable;
 
 import org.genericsystem.cache.Cache.ContextEventListener;
+import org.genericsystem.kernel.ArchiverPolicy;
 import org.genericsystem.kernel.Context;
 import org.genericsystem.kernel.Generic;
 import org.genericsystem.kernel.Root;
@@ -19,11 +20,27 @@ public class Engine extends Root {
 	}
 
 	public Engine(Serializable engineValue, String persistentDirectoryPath, Class<?>... userClasses) {
-		super(engineValue, persistentDirectoryPath, userClasses);
+		this(engineValue, persistentDirectoryPath, new ArchiverPolicy(), userClasses);
+	}
+
+	public Engine(Serializable engineValue, String persistentDirectoryPath, ArchiverPolicy archiverPolicy, Class<?>... userClasses) {
+		super(engineValue, persistentDirectoryPath, archiverPolicy, userClasses);
 		// garbageCollector.startScheduler();
 	}
 
+	public Engine(Serializable engineValue, String persistentDirectoryPath, long ts, Class<?>... userClasses) {
+		this(engineValue, persistentDirectoryPath, new ArchiverPolicy(), ts, userClasses);
+	}
+
+	public Engine(Serializable engineValue, String persistentDirectoryPath, ArchiverPolicy archiverPolicy, long ts, Class<?>... userClasses) {
+		super(engineValue, persistentDirectoryPath, archiverPolicy, ts, userClasses);
+	}
+
 	protected final GarbageCollector garbageCollector = new GarbageCollector(this);
+	private final GroupCommitter groupCommitter = new GroupCommitter(this);
+	private volatile boolean groupCommit;
+	// Not initialized here : the root flushes its system generics before the fields of the engine are initialized
+	private volatile RetryPolicy retryPolicy;
 
 	@Override
 	public Cache newCache() {
@@ -35,6 +52,13 @@ public class Engine extends Root {
 		getCurrentCache().flush();
 	}
 
+	/**
+	 * @return a cache that reads the engine at the ts of its creation, or of its last shiftTs(), without making the concurrent commits fail. It rejects any mutation.
+	 */
+	public Cache newReadOnlyCache() {
+		return new ReadOnlyCache(this);
+	}
+
 	public Cache newCache(ContextEventListener<Generic> listener) {
 		return new Cache(new Transaction(this), listener);
 	}
@@ -45,7 +69,6 @@ public class Engine extends Root {
 	}
 
 	protected void stop(Cache cache) {
-		garbageCollector.stopsScheduler();
 		assert contextWrapper.get() == cache;
 		contextWrapper.set(null);
 	}
@@ -58,7 +81,44 @@ public class Engine extends Root {
 		return currentCache;
 	}
 
-	GarbageCollector getGarbageCollector() {
+	public RetryPolicy getRetryPolicy() {
+		if (retryPolicy == null)
+			retryPolicy = new RetryPolicy();
+		return retryPolicy;
+	}
+
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		if (retryPolicy == null)
+			throw new IllegalArgumentException("Retry policy must not be null");
+		this.retryPolicy = retryPolicy;
+	}
+
+	public boolean isGroupCommit() {
+		return groupCommit;
+	}
+
+	/**
+	 * @param groupCommit
+	 *            true to apply the flushes of the concurrent caches together, in one critical section and with one journal sync, see {@link GroupCommitter}.
+	 */
+	public void setGroupCommit(boolean groupCommit) {
+		this.groupCommit = groupCommit;
+	}
+
+	GroupCommitter getGroupCommitter() {
+		return groupCommitter;
+	}
+
+	@Override
+	public void close() {
+		garbageCollector.stopsScheduler();
+		super.close();
+	}
+
+	/**
+	 * @return the collector of the dead generics, not scheduled by default : see {@link GarbageCollector#startScheduler()}.
+	 */
+	public GarbageCollector getGarbageCollector() {
 		return garbageCollector;
 	}
 
@@ -1,7 +1,10 @@
 package org.genericsystem.cache;
 
 import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -10,30 +13,66 @@ import org.genericsystem.kernel.Generic;
 import org.genericsystem.kernel.Root;
 import org.genericsystem.kernel.Statics;
 
-public class GarbageCollector extends LinkedHashSet<Generic> {
+/**
+ * Collects the dead generics that no active context can read anymore. The watermark is the lowest ts of the caches, snapshots and exports in progress.
+ *
+ * A dead generic whose death ts is below the watermark and that the archiver has saved is unlinked from the dependencies of its ancestors : from then on only the iterations already positioned on it reach it, and the JVM
+ * reclaims it with its vertex once they are over. The collector keeps it until the watermark passes its unlink, then releases it with Root.forget, which drops it from the system generics if it was one. A generic resurrected by
+ * the undo of a failed group commit is removed from the collector.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class GarbageCollector {
 
-	private static final long serialVersionUID = -2021341943811568201L;
-	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "GarbageCollector");
+		thread.setDaemon(true);
+		return thread;
+	});
 	private final Root root;
+	// Fed by the commits running in parallel
+	private final Set<Generic> generics = ConcurrentHashMap.newKeySet();
+	// The unlinked generics with the ts of their unlink
+	private final Map<Generic, Long> unlinkeds = new ConcurrentHashMap<>();
 
 	public GarbageCollector(Root root) {
 		this.root = root;
 	}
 
+	public boolean add(Generic generic) {
+		return generics.add(generic);
+	}
+
+	public boolean remove(Generic generic) {
+		return generics.remove(generic);
+	}
+
+	/**
+	 * @return the number of dead generics not forgotten yet.
+	 */
+	public int size() {
+		return generics.size() + unlinkeds.size();
+	}
+
 	public void startScheduler() {
-		scheduler.scheduleAtFixedRate(() -> runGarbage(Statics.LIFE_TIMEOUT), Statics.GARBAGE_INITIAL_DELAY, Statics.GARBAGE_PERIOD, TimeUnit.MILLISECONDS);
+		scheduler.scheduleAtFixedRate(this::runGarbage, Statics.GARBAGE_INITIAL_DELAY, Statics.GARBAGE_PERIOD, TimeUnit.MILLISECONDS);
 	}
 
-	public void runGarbage(long timeOut) {
-		long ts = root.pickNewTs();
-		synchronized (root) {
-			Iterator<Generic> iterator = GarbageCollector.this.iterator();
-			while (iterator.hasNext()) {
-				Generic generic = iterator.next();
-				if (ts - generic.getLifeManager().getDeathTs() >= timeOut) {
-					generic.remove();
-					iterator.remove();
-				}
+	public synchronized void runGarbage() {
+		long watermark = root.getActiveContexts().getWatermark(root.pickNewTs());
+		Iterator<Entry<Generic, Long>> unlinkedIterator = unlinkeds.entrySet().iterator();
+		while (unlinkedIterator.hasNext()) {
+			Entry<Generic, Long> entry = unlinkedIterator.next();
+			if (entry.getValue() < watermark && root.forget(entry.getKey()))
+				unlinkedIterator.remove();
+		}
+		Iterator<Generic> iterator = generics.iterator();
+		while (iterator.hasNext()) {
+			Generic generic = iterator.next();
+			if (generic.getLifeManager().getDeathTs() < watermark && !root.hasPendingChange(generic) && root.unlink(generic)) {
+				unlinkeds.put(generic, root.pickNewTs());
+				iterator.remove();
 			}
 		}
 	}
@@ -0,0 +1,91 @@
+package org.genericsystem.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
+import org.genericsystem.api.core.exceptions.OptimisticLockConstraintViolationException;
+import org.genericsystem.kernel.Generic;
+import org.genericsystem.kernel.GroupCommit;
+
+/**
+ * Coordinator of the group commits of an engine : the caches that flush at the same time queue their changes, and the first of them that finds no commit in progress becomes the leader. The leader applies all the queued changes in
+ * one {@link GroupCommit}, then each cache handles its own result.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+class GroupCommitter {
+
+	private final Engine engine;
+	private final Queue<Request> requests = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock leaderLock = new ReentrantLock();
+
+	GroupCommitter(Engine engine) {
+		this.engine = engine;
+	}
+
+	private static class Request {
+
+		private final Transaction transaction;
+		private final Iterable<Generic> removes;
+		private final Iterable<Generic> adds;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private GroupCommit.Commit commit;
+		private RuntimeException failure;
+
+		private Request(Transaction transaction, Iterable<Generic> removes, Iterable<Generic> adds) {
+			this.transaction = transaction;
+			this.removes = removes;
+			this.adds = adds;
+		}
+	}
+
+	// Not interruptible : a queued request may be applied at any time by the leader
+	void commit(Transaction transaction, Iterable<Generic> removes, Iterable<Generic> adds) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
+		Request request = new Request(transaction, removes, adds);
+		requests.add(request);
+		boolean interrupted = false;
+		while (request.done.getCount() != 0L)
+			if (leaderLock.tryLock())
+				try {
+					applyQueued();
+				} finally {
+					leaderLock.unlock();
+				}
+			else
+				try {
+					request.done.await(1L, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (request.failure != null)
+			throw request.failure;
+		request.commit.rethrow();
+	}
+
+	private void applyQueued() {
+		List<Request> batch = new ArrayList<>();
+		try {
+			GroupCommit groupCommit = new GroupCommit(engine);
+			for (Request request = requests.poll(); request != null; request = requests.poll()) {
+				batch.add(request);
+				request.commit = groupCommit.add(request.transaction, request.removes, request.adds);
+			}
+			groupCommit.apply();
+		} catch (RuntimeException e) {
+			for (Request request : batch)
+				request.failure = e;
+		} finally {
+			for (Request request : batch)
+				request.done.countDown();
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package org.genericsystem.cache;
 
+import java.io.Serializable;
+
 import org.genericsystem.api.core.Snapshot;
 import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
 import org.genericsystem.api.core.exceptions.OptimisticLockConstraintViolationException;
@@ -9,7 +11,13 @@ public interface IDifferential {
 
 	abstract boolean isAlive(Generic vertex);
 
-	abstract Snapshot<Generic> getDependencies(Generic vertex);
+	abstract Snapshot<Generic> getInstances(Generic vertex);
+
+	abstract Snapshot<Generic> getInstances(Generic vertex, Serializable value);
+
+	abstract Snapshot<Generic> getInheritings(Generic vertex);
+
+	abstract Snapshot<Generic> getComposites(Generic vertex);
 
 	abstract void apply(Iterable<Generic> removes, Iterable<Generic> adds) throws ConcurrencyControlException, OptimisticLockConstraintViolationException;
 
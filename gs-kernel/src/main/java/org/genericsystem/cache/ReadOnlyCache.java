@@ -0,0 +1,38 @@
+package org.genericsystem.cache;
+
+import org.genericsystem.kernel.Generic;
+
+/**
+ * Cache for the reporting jobs : it reads the engine at a pinned ts, moved only by {@link #shiftTs()}, and its reads never make a concurrent commit fail. Any mutation is rejected with an UnsupportedOperationException.
+ *
+ * As its reads are not tracked, the reads are not repeatable : a concurrent commit of a transaction older than the pinned ts is seen once done.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class ReadOnlyCache extends Cache {
+
+	protected ReadOnlyCache(Engine engine) {
+		super(new Transaction(engine, engine.pickNewTs(), true));
+	}
+
+	@Override
+	protected Transaction buildTransaction(long ts) {
+		return new Transaction(getRoot(), ts, true);
+	}
+
+	@Override
+	protected Generic plug(Generic generic) {
+		throw new UnsupportedOperationException("Read only cache");
+	}
+
+	@Override
+	protected void unplug(Generic generic) {
+		throw new UnsupportedOperationException("Read only cache");
+	}
+
+	@Override
+	public void tryFlush() {
+		throw new UnsupportedOperationException("Read only cache");
+	}
+}
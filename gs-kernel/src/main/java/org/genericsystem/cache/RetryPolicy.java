@@ -0,0 +1,113 @@
+package org.genericsystem.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.genericsystem.kernel.Statics;
+
+/**
+ * Retries of {@link Cache#flush()} on a ConcurrencyControlException. The delay before each retry grows exponentially from the initial delay up to the max delay, and is randomly reduced by up to the jitter ratio so that the conflicting
+ * caches do not retry together. The flush gives up after the max attempts or when the next retry would exceed the max elapsed time.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class RetryPolicy {
+
+	private int maxAttempts = Statics.ATTEMPTS;
+	private long initialDelay = 1L;
+	private long maxDelay = 100L;
+	private double multiplier = 2d;
+	private double jitter = 0.5d;
+	private long maxElapsedTime = 10000L;
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public RetryPolicy setMaxAttempts(int maxAttempts) {
+		if (maxAttempts < 1)
+			throw new IllegalArgumentException("At least one attempt is needed : " + maxAttempts);
+		this.maxAttempts = maxAttempts;
+		return this;
+	}
+
+	public long getInitialDelay() {
+		return initialDelay;
+	}
+
+	/**
+	 * @param initialDelay
+	 *            the delay before the first retry in milliseconds.
+	 * @return this policy.
+	 */
+	public RetryPolicy setInitialDelay(long initialDelay) {
+		if (initialDelay < 0L)
+			throw new IllegalArgumentException("Negative initial delay : " + initialDelay);
+		this.initialDelay = initialDelay;
+		return this;
+	}
+
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	public RetryPolicy setMaxDelay(long maxDelay) {
+		if (maxDelay < 0L)
+			throw new IllegalArgumentException("Negative max delay : " + maxDelay);
+		this.maxDelay = maxDelay;
+		return this;
+	}
+
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	public RetryPolicy setMultiplier(double multiplier) {
+		if (multiplier < 1d)
+			throw new IllegalArgumentException("Multiplier must not be lower than 1 : " + multiplier);
+		this.multiplier = multiplier;
+		return this;
+	}
+
+	public double getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * @param jitter
+	 *            the max ratio of a delay randomly removed from it, from 0 for no jitter to 1.
+	 * @return this policy.
+	 */
+	public RetryPolicy setJitter(double jitter) {
+		if (jitter < 0d || jitter > 1d)
+			throw new IllegalArgumentException("Jitter must be between 0 and 1 : " + jitter);
+		this.jitter = jitter;
+		return this;
+	}
+
+	public long getMaxElapsedTime() {
+		return maxElapsedTime;
+	}
+
+	/**
+	 * @param maxElapsedTime
+	 *            the max time spent in a flush in milliseconds, Long.MAX_VALUE for no limit.
+	 * @return this policy.
+	 */
+	public RetryPolicy setMaxElapsedTime(long maxElapsedTime) {
+		if (maxElapsedTime < 0L)
+			throw new IllegalArgumentException("Negative max elapsed time : " + maxElapsedTime);
+		this.maxElapsedTime = maxElapsedTime;
+		return this;
+	}
+
+	/**
+	 * @param attempt
+	 *            the number of the failed attempt, from 0.
+	 * @return the delay in milliseconds before the next attempt.
+	 */
+	public long getDelay(int attempt) {
+		double delay = Math.min(maxDelay, initialDelay * Math.pow(multiplier, attempt));
+		return (long) (delay * (1d - jitter * ThreadLocalRandom.current().nextDouble()));
+	}
+}
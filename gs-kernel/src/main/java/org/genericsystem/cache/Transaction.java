@@ -10,6 +10,10 @@ public class Transaction extends org.genericsystem.kernel.Transaction {
 		super(engine, ts);
 	}
 
+	protected Transaction(Engine engine, long ts, boolean readOnly) {
+		super(engine, ts, readOnly);
+	}
+
 	protected Transaction(Engine engine) {
 		super(engine);
 	}
@@ -21,10 +25,16 @@ public class Transaction extends org.genericsystem.kernel.Transaction {
 
 	@Override
 	protected void unplug(Generic generic) {
-		generic.getLifeManager().kill(getTs());
+		kill(generic);
 		getRoot().getGarbageCollector().add(generic);
 	}
 
+	@Override
+	protected void cancelUnplug(Generic generic) {
+		super.cancelUnplug(generic);
+		getRoot().getGarbageCollector().remove(generic);
+	}
+
 	@Override
 	protected Checker buildChecker() {
 		return new Checker(Transaction.this) {
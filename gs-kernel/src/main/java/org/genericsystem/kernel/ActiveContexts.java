@@ -0,0 +1,49 @@
+package org.genericsystem.kernel;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The ts of the contexts that may still read a root : the lowest of them is the watermark below which the versions of the dead generics are not needed anymore. A context is forgotten when it is unregistered or garbage collected.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class ActiveContexts {
+
+	private final Map<Object, Long> contexts = new WeakHashMap<>();
+	// The highest watermark returned : the versions of the generics dead before it may have been collected
+	private long collectedWatermark = Long.MIN_VALUE;
+
+	public synchronized void register(Object context, long ts) {
+		contexts.put(context, ts);
+	}
+
+	public synchronized void unregister(Object context) {
+		contexts.remove(context);
+	}
+
+	/**
+	 * Registers again an unregistered context, unless a watermark above its ts has been returned since : the versions it reads may have been collected.
+	 *
+	 * @return true if the context is registered.
+	 */
+	public synchronized boolean reregister(Object context, long ts) {
+		if (ts < collectedWatermark)
+			return false;
+		contexts.put(context, ts);
+		return true;
+	}
+
+	/**
+	 * @param ts
+	 *            the watermark if no context is active, usually a new ts.
+	 * @return the lowest ts of the active contexts, ts if it is lower.
+	 */
+	public synchronized long getWatermark(long ts) {
+		for (long contextTs : contexts.values())
+			ts = Math.min(ts, contextTs);
+		collectedWatermark = Math.max(collectedWatermark, ts);
+		return ts;
+	}
+}
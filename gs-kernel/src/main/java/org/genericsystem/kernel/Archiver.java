@@ -1,35 +1,65 @@
 package org.genericsystem.kernel;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.io.StringReader;
+import java.io.Writer;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import org.genericsystem.api.core.AxedPropertyClass;
+import org.genericsystem.api.core.IVertex.SystemProperty;
+import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
+import org.genericsystem.api.core.exceptions.RollbackException;
 import org.genericsystem.kernel.GenericHandler.SetArchiverHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,105 +72,404 @@ public class Archiver {
 
 	public static final Logger log = LoggerFactory.getLogger(Archiver.class);
 
-	private static final long ARCHIVER_COEFF = 5L;
-
 	private static final String PATTERN = "yyyy.MM.dd_HH-mm-ss.SSS";
 	private static final String MATCHING_REGEX = "[0-9]{4}.[0-9]{2}.[0-9]{2}_[0-9]{2}-[0-9]{2}-[0-9]{2}.[0-9]{3}---[0-9]+";
 
 	protected static final String GS_EXTENSION = ".gs";
-	protected static final String ZIP_EXTENSION = ".zip";
+	// The snapshots serialized by ObjectOutputStream in a zip, before the binary format
+	private static final String LEGACY_EXTENSION = GS_EXTENSION + ".zip";
 	private static final String PART_EXTENSION = ".part";
 	private static final String LOCK_FILE_NAME = ".lock";
+	private static final String JOURNAL_EXTENSION = ".gsj";
+	private static final String DELTA_EXTENSION = ".gsd";
+	private static final String CORRUPTED_EXTENSION = ".corrupted";
+
+	private static final byte JOURNAL_KILL = 0;
+	private static final byte JOURNAL_BIRTH = 1;
+	private static final byte JOURNAL_END = 2;
 
-	private static final long SNAPSHOTS_PERIOD = 1000L;
-	private static final long SNAPSHOTS_INITIAL_DELAY = 1000L;
+	static final long NO_LSN = -1L;
 
-	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private static final String EXPORT_FORMAT = "genericsystem";
+	private static final int EXPORT_VERSION = 1;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "gs-archiver");
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	protected final Root root;
+	private final ArchiverPolicy policy;
 	private final File directory;
+	private final long recoveryTs;
 	private FileLock lockFile;
 
-	private final ZipFileManager zipFileManager = new ZipFileManager(new FileManager());
+	private final CompressedFileManager compressedFileManager = new CompressedFileManager(new FileManager());
+
+	private final Object journalLock = new Object();
+	private Journal journal;
+	private NavigableSet<Generic> systemGenerics;
+
+	private final Set<Generic> changes = ConcurrentHashMap.newKeySet();
+	private long lastSnapshotTs = LifeManager.TS_SYSTEM;
+	private int deltasCount;
+	private final AtomicLong commitsSinceSnapshot = new AtomicLong();
+	private final AtomicLong bytesSinceSnapshot = new AtomicLong();
+	private final AtomicBoolean snapshotRequested = new AtomicBoolean();
 
 	public static String getFileExtension() {
-		return GS_EXTENSION + ZIP_EXTENSION;
+		return GS_EXTENSION;
 	}
 
 	public Archiver(Root root, String directoryPath) {
+		this(root, directoryPath, new ArchiverPolicy());
+	}
+
+	public Archiver(Root root, String directoryPath, ArchiverPolicy policy) {
 		this.root = root;
+		this.policy = policy;
+		this.recoveryTs = Long.MAX_VALUE;
 		directory = prepareAndLockDirectory(directoryPath);
 		if (directory != null) {
-			String snapshotPath = getSnapshotPath(directory);
-			if (snapshotPath != null) {
-				try {
-					getLoader(zipFileManager.getObjectInputStream(snapshotPath + getFileExtension())).loadSnapshot();
-				} catch (IOException | ClassNotFoundException e) {
-					log.error(e.getMessage(), e);
-				}
+			try {
+				load();
+			} catch (RuntimeException e) {
+				releaseLock();
+				throw e;
 			}
+			systemGenerics = root.getSystemGenerics();
+			openJournal(0L);
 		}
 		startScheduler();
 	}
 
-	protected Loader getLoader(ObjectInputStream objectInputStream) {
-		return new Loader(objectInputStream);
+	/**
+	 * Read-only archiver : loads the state of the directory at ts and never writes in it. The directory is not locked, it can be used by a running engine.
+	 *
+	 * The state is exact at the ts of a snapshot or of a delta and at any ts after the previous snapshot, where the journals are kept. Between two older snapshots, it is the state of the previous one.
+	 */
+	public Archiver(Root root, String directoryPath, ArchiverPolicy policy, long ts) {
+		this.root = root;
+		this.policy = policy;
+		this.recoveryTs = ts;
+		directory = new File(directoryPath);
+		if (!directory.isDirectory())
+			throw new IllegalStateException("Datasource path : " + directoryPath + " is not a directory");
+		load();
 	}
 
-	protected Saver getSaver(ObjectOutputStream objectOutputStream, long ts) {
-		return new Saver(objectOutputStream, ts);
+	// A corrupted snapshot or delta is skipped : the journals are replayed from the last snapshot or delta loaded, a startup that would lose commits fails
+	private void load() {
+		if (!snapshotsMap(directory, LEGACY_EXTENSION).isEmpty())
+			throw new IllegalStateException("Datasource : " + directory.getAbsolutePath() + " holds snapshots of the former serialized format (" + LEGACY_EXTENSION
+					+ ") that can't be read anymore : remove them to start an empty datasource");
+		Loader loader = getLoader();
+		try {
+			NavigableMap<Long, File> snapshotsMap = snapshotsMap(directory, getFileExtension()).headMap(recoveryTs, true);
+			Long snapshotTs = loadSnapshot(loader, snapshotsMap);
+			Long loadedTs = snapshotTs;
+			boolean complete = snapshotTs == null || snapshotTs.equals(snapshotsMap.lastKey());
+			if (snapshotTs != null)
+				for (Entry<Long, File> delta : getDeltasToLoad(snapshotsMap, snapshotTs).entrySet()) {
+					try {
+						loader.loadDelta(compressedFileManager.getInputStream(delta.getValue().getAbsolutePath(), policy.getCodec()));
+					} catch (IOException e) {
+						log.warn("Corrupted delta : " + delta.getValue().getName() + ", replaying the journals from the previous snapshot or delta", e);
+						complete = false;
+						break;
+					}
+					loadedTs = delta.getKey();
+				}
+			for (File journalFile : getJournalsToReplay(loadedTs, complete).values())
+				loader.replayJournal(journalFile);
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalStateException("Unable to load the datasource : " + directory.getAbsolutePath(), e);
+		}
+	}
+
+	// A corrupted snapshot is skipped for the previous one, it is set aside so that the next snapshots do not rely on it
+	private Long loadSnapshot(Loader loader, NavigableMap<Long, File> snapshotsMap) throws ClassNotFoundException, IOException {
+		for (Entry<Long, File> snapshot : snapshotsMap.descendingMap().entrySet()) {
+			List<SnapshotFile.Segment> segments;
+			try {
+				segments = SnapshotFile.read(snapshot.getValue(), policy.getCodec());
+			} catch (StreamCorruptedException e) {
+				log.warn("Corrupted snapshot : " + snapshot.getValue().getName() + ", fallback to the previous one", e);
+				if (!isReadOnly())
+					snapshot.getValue().renameTo(new File(snapshot.getValue().getAbsolutePath() + CORRUPTED_EXTENSION));
+				continue;
+			}
+			loader.loadSnapshot(segments);
+			return snapshot.getKey();
+		}
+		if (!snapshotsMap.isEmpty())
+			throw new IllegalStateException("No valid snapshot in datasource : " + directory.getAbsolutePath());
+		return null;
+	}
+
+	public boolean isReadOnly() {
+		return recoveryTs != Long.MAX_VALUE;
+	}
+
+	protected Loader getLoader() {
+		return new Loader();
+	}
+
+	protected Saver getSaver(long ts) {
+		return new Saver(ts);
+	}
+
+	protected Exporter getExporter(long ts) {
+		return new Exporter(ts);
+	}
+
+	protected Importer getImporter() {
+		return new Importer();
 	}
 
 	private Archiver startScheduler() {
-		if (directory != null && lockFile != null && SNAPSHOTS_PERIOD > 0L)
-			scheduler.scheduleAtFixedRate(() -> {
+		if (directory != null && lockFile != null && policy.getPeriod() > 0L)
+			scheduler.scheduleAtFixedRate(this::scheduledSnapshot, policy.getInitialDelay(), policy.getPeriod(), TimeUnit.MILLISECONDS);
+		return this;
+	}
+
+	private void scheduledSnapshot() {
+		try {
+			doSnapshot(policy.getBytesPerSecond());
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
+	// At most one triggered snapshot is pending : the commits that reach a threshold while it runs are counted for the next one
+	private void triggerSnapshotIfNeeded(int recordLength) {
+		long commits = commitsSinceSnapshot.incrementAndGet();
+		long bytes = bytesSinceSnapshot.addAndGet(recordLength);
+		if ((policy.getCommitsBeforeSnapshot() > 0L && commits >= policy.getCommitsBeforeSnapshot()) || (policy.getBytesBeforeSnapshot() > 0L && bytes >= policy.getBytesBeforeSnapshot()))
+			if (snapshotRequested.compareAndSet(false, true))
 				try {
-					doSnapshot();
-				} catch (IOException e) {
-					log.error(e.getMessage(), e);
+					scheduler.execute(this::scheduledSnapshot);
+				} catch (RejectedExecutionException ignore) {
+					// closing : the last snapshot is taken by close()
 				}
-			}, SNAPSHOTS_INITIAL_DELAY, SNAPSHOTS_PERIOD, TimeUnit.MILLISECONDS);
-		return this;
 	}
 
 	public void close() {
 		if (directory != null && lockFile != null) {
 			scheduler.shutdown();
 			try {
-				doSnapshot();
-				lockFile.close();
-				lockFile = null;
+				// A triggered snapshot still pending is taken before the last one
+				scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+				doSnapshot(Long.MAX_VALUE);
+				synchronized (journalLock) {
+					journal.close();
+				}
+				releaseLock();
 			} catch (IOException e) {
 				// TODO rollback here
 				throw new IllegalStateException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private void releaseLock() {
+		try {
+			lockFile.close();
+			lockFile = null;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// The first snapshot of a session is always a full one : the deltas refer to the ts of the system generics of the session
+	private synchronized void doSnapshot(long bytesPerSecond) throws IOException {
+		snapshotRequested.set(false);
+		boolean full = lastSnapshotTs == LifeManager.TS_SYSTEM || deltasCount >= policy.getDeltasBeforeFullSnapshot();
+		if (!full && changes.isEmpty())
+			return;
+		// The generics drained for the snapshot must not be collected before they are saved
+		root.getActiveContexts().register(this, root.pickNewTs());
+		try {
+			rollJournal();
+			commitsSinceSnapshot.set(0L);
+			bytesSinceSnapshot.set(0L);
+			NavigableSet<Generic> delta = drainChanges();
+			long ts = root.pickNewTs();
+			String extension = full ? getFileExtension() : DELTA_EXTENSION;
+			String fileName = directory.getAbsolutePath() + File.separator + getFilename(ts) + extension;
+			String partFileName = fileName + PART_EXTENSION;
+			Saver saver = getSaver(ts);
+			if (full) {
+				saver.saveSnapshot(new File(partFileName), bytesPerSecond);
+				verifySnapshot(new File(partFileName));
+			} else
+				saver.saveDelta(compressedFileManager.getOutputStream(partFileName, policy.getCodec()), delta, lastSnapshotTs);
+			new File(partFileName).renameTo(new File(fileName));
+			lastSnapshotTs = ts;
+			deltasCount = full ? 0 : deltasCount + 1;
+			manageOldSnapshots(directory);
+		} finally {
+			root.getActiveContexts().unregister(this);
+		}
+	}
+
+	// Nothing is deleted if the new snapshot can not be read back
+	private void verifySnapshot(File file) throws IOException {
+		try {
+			SnapshotFile.read(file, policy.getCodec());
+		} catch (StreamCorruptedException e) {
+			file.delete();
+			throw e;
+		}
+	}
+
+	// Takes a snapshot or a delta now, on the calling thread
+	void snapshot() {
+		if (directory != null && lockFile != null)
+			scheduledSnapshot();
+	}
+
+	void addChange(Generic generic) {
+		if (directory != null && !isReadOnly())
+			changes.add(generic);
+	}
+
+	boolean hasChange(Generic generic) {
+		return changes.contains(generic);
+	}
+
+	// The state of the drained generics is read after they are removed from the changes : a concurrent change is at worst saved twice
+	private NavigableSet<Generic> drainChanges() {
+		NavigableSet<Generic> drained = new TreeSet<>();
+		for (Generic generic : changes)
+			if (changes.remove(generic))
+				drained.add(generic);
+		return drained;
+	}
+
+	long journal(long ts, Iterable<Generic> removes, Iterable<Generic> adds) {
+		if (directory == null || isReadOnly())
+			return NO_LSN;
+		try {
+			byte[] record = encodeCommit(ts, removes, adds);
+			long lsn;
+			synchronized (journalLock) {
+				lsn = journal.append(record);
 			}
+			triggerSnapshotIfNeeded(record.length);
+			return lsn;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
 		}
 	}
 
-	private void doSnapshot() throws IOException {
+	void sync(long lsn) {
+		if (lsn == NO_LSN)
+			return;
+		Journal current;
+		synchronized (journalLock) {
+			current = journal;
+		}
+		try {
+			current.sync(lsn);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private long rollJournal() throws IOException {
+		synchronized (journalLock) {
+			long startLsn = journal.getWrittenLsn();
+			journal.close();
+			return openJournal(startLsn);
+		}
+	}
+
+	// A new journal starts with the system generics of this session, their ts are unknown from the snapshots of the previous sessions
+	private long openJournal(long startLsn) {
 		long ts = root.pickNewTs();
-		String fileName = directory.getAbsolutePath() + File.separator + getFilename(ts) + getFileExtension();
-		String partFileName = fileName + PART_EXTENSION;
-		getSaver(zipFileManager.getObjectOutputStream(partFileName, getFilename(ts) + GS_EXTENSION), ts).saveSnapshot();
-		new File(partFileName).renameTo(new File(fileName));
-		manageOldSnapshots(directory);
+		try {
+			synchronized (journalLock) {
+				journal = new Journal(new File(directory.getAbsolutePath() + File.separator + getFilename(ts) + JOURNAL_EXTENSION), startLsn);
+				journal.sync(journal.append(encodeCommit(ts, Collections.emptyList(), systemGenerics)));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return ts;
+	}
+
+	private byte[] encodeCommit(long ts, Iterable<Generic> removes, Iterable<Generic> adds) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ArchiverOutputStream outputStream = new ArchiverOutputStream(bytes)) {
+			Saver saver = new Saver(outputStream);
+			outputStream.writeHeader();
+			outputStream.writeVarLong(ts);
+			for (Generic remove : removes) {
+				outputStream.writeByte(JOURNAL_KILL);
+				outputStream.writeTsRef(remove.getTs());
+			}
+			for (Generic add : adds) {
+				outputStream.writeByte(JOURNAL_BIRTH);
+				saver.writeDependency(add);
+			}
+			outputStream.writeByte(JOURNAL_END);
+		}
+		return bytes.toByteArray();
+	}
+
+	// The deltas of a snapshot are written before the next one
+	private NavigableMap<Long, File> getDeltasToLoad(NavigableMap<Long, File> snapshotsMap, long snapshotTs) {
+		NavigableMap<Long, File> deltasMap = snapshotsMap(directory, DELTA_EXTENSION).subMap(snapshotTs, false, recoveryTs, true);
+		Long nextTs = snapshotsMap.higherKey(snapshotTs);
+		return nextTs != null ? deltasMap.headMap(nextTs, false) : deltasMap;
 	}
 
+	// The journal opened just before the last snapshot or delta loaded and all the following ones, a journal opened after the recovery ts has no commit before it
+	private NavigableMap<Long, File> getJournalsToReplay(Long loadedTs, boolean complete) {
+		NavigableMap<Long, File> journalsMap = snapshotsMap(directory, JOURNAL_EXTENSION).headMap(recoveryTs, true);
+		if (loadedTs == null)
+			return journalsMap;
+		Long journalTs = journalsMap.lowerKey(loadedTs);
+		if (journalTs != null)
+			return journalsMap.tailMap(journalTs, true);
+		if (!complete)
+			throw new IllegalStateException("The journals that follow the last valid snapshot or delta are missing in datasource : " + directory.getAbsolutePath());
+		return journalsMap;
+	}
+
+	// The previous snapshot is kept with its deltas and journals : it is the fallback if the last one is corrupted
 	private void manageOldSnapshots(File directory) {
 		NavigableMap<Long, File> snapshotsMap = snapshotsMap(directory, getFileExtension());
+		while (snapshotsMap.size() > policy.getMaxSnapshots())
+			removeSnapshot(snapshotsMap, snapshotsMap.firstKey());
 		long lastTs = snapshotsMap.lastKey();
 		long firstTs = snapshotsMap.firstKey();
+		Long previousTs = snapshotsMap.lowerKey(lastTs);
 		long ts = firstTs;
 		for (long snapshotTs : new TreeSet<>(snapshotsMap.keySet()))
-			if (snapshotTs != lastTs && snapshotTs != firstTs)
+			if (snapshotTs != lastTs && snapshotTs != firstTs && !previousTs.equals(snapshotTs))
 				if ((snapshotTs - ts) < minInterval((lastTs - snapshotTs)))
 					removeSnapshot(snapshotsMap, snapshotTs);
 				else
 					ts = snapshotTs;
+		long fallbackTs = previousTs != null ? previousTs : lastTs;
+		for (File deltaFile : snapshotsMap(directory, DELTA_EXTENSION).headMap(fallbackTs).values())
+			deltaFile.delete();
+		NavigableMap<Long, File> journalsMap = snapshotsMap(directory, JOURNAL_EXTENSION);
+		Long journalTs = journalsMap.lowerKey(fallbackTs);
+		if (journalTs != null)
+			for (File journalFile : journalsMap.headMap(journalTs).values())
+				journalFile.delete();
 	}
 
 	private long minInterval(long periodNumber) {
-		return (long) Math.floor(periodNumber / ARCHIVER_COEFF);
+		return (long) Math.floor(periodNumber / policy.getRetentionCoefficient());
 	}
 
 	private void removeSnapshot(NavigableMap<Long, File> snapshotsMap, long ts) {
@@ -165,11 +494,6 @@ public class Archiver {
 		}
 	}
 
-	private String getSnapshotPath(File directory) {
-		NavigableMap<Long, File> snapshotsMap = snapshotsMap(directory, getFileExtension());
-		return snapshotsMap.isEmpty() ? null : directory.getAbsolutePath() + File.separator + getFilename(snapshotsMap.lastKey());
-	}
-
 	private static NavigableMap<Long, File> snapshotsMap(File directory, String extension) {
 		NavigableMap<Long, File> snapshotsMap = new TreeMap<>();
 		for (File file : directory.listFiles()) {
@@ -197,38 +521,82 @@ public class Archiver {
 
 	public class Saver {
 
-		protected final ObjectOutputStream objectOutputStream;
+		protected ArchiverOutputStream outputStream;
 		protected final Transaction transaction;
 
-		protected Saver(ObjectOutputStream objectOutputStream, long ts) {
-			this.objectOutputStream = objectOutputStream;
+		protected Saver(long ts) {
 			this.transaction = buildTransaction(ts);
 		}
 
+		private Saver(ArchiverOutputStream outputStream) {
+			this.outputStream = outputStream;
+			this.transaction = null;
+		}
+
+		// The snapshot reads never make a commit fail : the commits it misses are in the journal rolled before its ts was picked
 		protected Transaction buildTransaction(long ts) {
-			return new Transaction(root, ts);
+			return new Transaction(root, ts, true);
 		}
 
 		public Transaction getTransaction() {
 			return transaction;
 		}
 
-		private void saveSnapshot() throws IOException {
-			writeDependencies(transaction.computeDependencies(root), new HashSet<>());
-			objectOutputStream.flush();
-			objectOutputStream.close();
+		// The ancestors of a generic are in a lower level or before it in the same level
+		protected List<List<Generic>> computeLevels() {
+			List<List<Generic>> levels = new ArrayList<>();
+			for (Generic dependency : transaction.computeDependencies(root)) {
+				while (levels.size() <= dependency.getLevel())
+					levels.add(new ArrayList<>());
+				levels.get(dependency.getLevel()).add(dependency);
+			}
+			return levels;
+		}
+
+		private void saveSnapshot(File file, long bytesPerSecond) throws IOException {
+			List<List<Generic>> levels = computeLevels();
+			try (SnapshotFile.Writer writer = new SnapshotFile.Writer(file, policy.getCodec(), bytesPerSecond)) {
+				for (int level = 0; level < levels.size(); level++)
+					for (int from = 0; from < levels.get(level).size(); from += SnapshotFile.SEGMENT_SIZE) {
+						List<Generic> segment = levels.get(level).subList(from, Math.min(from + SnapshotFile.SEGMENT_SIZE, levels.get(level).size()));
+						writer.writeSegment(level, segment.size(), segment.stream().mapToLong(Generic::getTs).max().getAsLong(), encodeSegment(segment));
+					}
+			}
+		}
+
+		// Each segment is an independent stream : its dictionaries and positions do not depend on the other segments
+		private byte[] encodeSegment(List<Generic> segment) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			outputStream = new ArchiverOutputStream(new BufferedOutputStream(policy.getCodec().compress(bytes), 1 << 16));
+			outputStream.writeHeader();
+			for (Generic dependency : segment)
+				writeDependency(dependency);
+			outputStream.close();
+			return bytes.toByteArray();
 		}
 
-		private void writeDependencies(NavigableSet<Generic> dependencies, Set<Generic> vertexSet) throws IOException {
-			for (Generic dependency : dependencies)
-				if (vertexSet.add(dependency))
-					writeDependency(dependency);
+		// A generic born and killed since the previous snapshot has never been saved, a generic whose commit has been undone is not born
+		private void saveDelta(ArchiverOutputStream outputStream, NavigableSet<Generic> delta, long previousTs) throws IOException {
+			this.outputStream = outputStream;
+			outputStream.writeHeader();
+			for (Generic generic : delta)
+				if (!generic.getLifeManager().willDie() && generic.getLifeManager().getBirthTs() != Long.MAX_VALUE) {
+					outputStream.writeByte(JOURNAL_BIRTH);
+					writeDependency(generic);
+				} else if (generic.getLifeManager().getBirthTs() <= previousTs) {
+					outputStream.writeByte(JOURNAL_KILL);
+					outputStream.writeVarLong(generic.getLifeManager().getDeathTs());
+					writeAncestorId(generic, generic);
+				}
+			outputStream.writeByte(JOURNAL_END);
+			outputStream.flush();
+			outputStream.close();
 		}
 
-		private void writeDependency(Generic dependency) throws IOException {
-			writeAncestorId(dependency, dependency);
+		void writeDependency(Generic dependency) throws IOException {
+			outputStream.declareTs(dependency.getTs());
 			writeOtherTs(dependency);
-			objectOutputStream.writeObject(dependency.getValue());
+			outputStream.writeValue(dependency.getValue());
 			writeAncestorId(dependency, dependency.getMeta());
 			writeAncestorsId(dependency, dependency.getSupers());
 			writeAncestorsId(dependency, dependency.getComponents());
@@ -236,29 +604,29 @@ public class Archiver {
 		}
 
 		protected void writeOtherTs(Generic dependency) throws IOException {
-			objectOutputStream.writeLong(dependency.getLifeManager().getBirthTs());
-			objectOutputStream.writeLong(dependency.getLifeManager().getLastReadTs());
-			objectOutputStream.writeLong(dependency.getLifeManager().getDeathTs());
+			LifeManager lifeManager = dependency.getLifeManager();
+			long deathTs = transaction != null && lifeManager.getDeathTs() > transaction.getTs() ? Long.MAX_VALUE : lifeManager.getDeathTs();
+			outputStream.writeOtherTs(dependency.getTs(), lifeManager.getBirthTs(), lifeManager.getLastReadTs(), deathTs);
 		}
 
 		private void writeAncestorsId(Generic dependency, List<Generic> ancestors) throws IOException {
-			objectOutputStream.writeInt(ancestors.size());
+			outputStream.writeVarInt(ancestors.size());
 			for (Generic ancestor : ancestors)
 				writeAncestorId(dependency, ancestor);
 		}
 
 		protected void writeAncestorId(Generic dependency, Generic ancestor) throws IOException {
-			objectOutputStream.writeLong(ancestor != null ? ancestor.getTs() : dependency.getTs());
+			outputStream.writeTsRef(ancestor != null ? ancestor.getTs() : dependency.getTs());
 		}
 	}
 
 	protected class Loader {
 
-		protected final ObjectInputStream objectInputStream;
+		protected ArchiverInputStream inputStream;
 		protected final Transaction transaction;
+		protected final Map<Long, Generic> vertexMap = new HashMap<>();
 
-		protected Loader(ObjectInputStream objectInputStream) {
-			this.objectInputStream = objectInputStream;
+		protected Loader() {
 			this.transaction = (Transaction) root.buildTransaction();
 		}
 
@@ -266,78 +634,431 @@ public class Archiver {
 			return transaction;
 		}
 
-		private void loadSnapshot() throws ClassNotFoundException, IOException {
+		// A trusted snapshot has been checked when it was written : its generics are built without checker nor handler
+		protected boolean isTrusted() {
+			return true;
+		}
+
+		// The segments are decoded in parallel, then materialized level by level
+		private void loadSnapshot(List<SnapshotFile.Segment> segments) throws ClassNotFoundException, IOException {
+			List<ForkJoinTask<Record[]>> tasks = new ArrayList<>();
+			for (SnapshotFile.Segment segment : segments)
+				tasks.add(ForkJoinPool.commonPool().submit(() -> decodeSegment(segment)));
+			List<Record> levelRecords = new ArrayList<>();
+			for (int i = 0; i < segments.size(); i++) {
+				Collections.addAll(levelRecords, join(tasks.get(i)));
+				if (i == segments.size() - 1 || segments.get(i + 1).getLevel() != segments.get(i).getLevel()) {
+					loadLevel(levelRecords);
+					levelRecords.clear();
+				}
+			}
+		}
+
+		private Record[] decodeSegment(SnapshotFile.Segment segment) throws IOException, ClassNotFoundException {
+			try (ArchiverInputStream segmentInputStream = segment.getInputStream()) {
+				segmentInputStream.readHeader();
+				Record[] records = new Record[segment.getCount()];
+				for (int i = 0; i < records.length; i++)
+					if ((records[i] = new Record(segmentInputStream)).ts > segment.getMaxTs())
+						throw new StreamCorruptedException("Generic after the max ts of the snapshot : " + records[i].ts);
+				return records;
+			}
+		}
+
+		private Record[] join(ForkJoinTask<Record[]> task) throws IOException, ClassNotFoundException {
 			try {
-				Map<Long, Generic> vertexMap = new HashMap<>();
-				for (;;)
-					loadDependency(vertexMap);
-			} catch (EOFException ignore) {
+				return task.get();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				if (e.getCause() instanceof ClassNotFoundException)
+					throw (ClassNotFoundException) e.getCause();
+				throw new IllegalStateException(e.getCause());
 			}
 		}
 
-		protected long loadTs() throws IOException {
-			return objectInputStream.readLong();
+		// The generics that are or have been system ones are resolved with the system generics of this session. The metas of a level are in the previous level and its supers in the same level : all the generics of a level are created before their vertices
+		void loadLevel(List<Record> records) {
+			List<Record> trusted = new ArrayList<>();
+			for (Record record : records)
+				if (!isTrusted() || record.otherTs[0] <= LifeManager.TS_OLD_SYSTEM)
+					replayBirth(record);
+				else
+					trusted.add(record);
+			trusted.parallelStream().forEach(record -> record.generic = root.newT(null, record.metaTs == record.ts ? null : vertexMap.get(record.metaTs)));
+			for (Record record : trusted)
+				if (vertexMap.put(record.ts, record.generic) != null)
+					throw new IllegalStateException("Generic saved twice in snapshot : " + record.ts);
+			trusted.parallelStream().forEach(record -> {
+				if (!isResolved(record))
+					throw new IllegalStateException("Unresolved ancestor in snapshot for generic : " + record.ts);
+				root.init(record.generic, record.ts, record.metaTs == record.ts ? null : vertexMap.get(record.metaTs), resolve(record.supersTs), record.value, resolve(record.componentsTs), record.otherTs);
+			});
+			for (Record record : trusted)
+				transaction.index(record.generic);
 		}
 
-		protected long[] loadOtherTs() throws IOException {
-			return new long[] { objectInputStream.readLong(), objectInputStream.readLong(), objectInputStream.readLong() };
+		// A truncated delta ends without JOURNAL_END : its EOFException is not an end of stream. The delta is read entirely before it is applied, a corrupted one changes nothing
+		private void loadDelta(ArchiverInputStream inputStream) throws ClassNotFoundException, IOException {
+			List<Runnable> changes = new ArrayList<>();
+			try {
+				inputStream.readHeader();
+				for (byte tag = inputStream.readByte(); tag != JOURNAL_END; tag = inputStream.readByte())
+					if (tag == JOURNAL_KILL) {
+						long deathTs = inputStream.readVarLong();
+						long ts = inputStream.readTsRef();
+						changes.add(() -> replayKill(ts, deathTs));
+					} else {
+						Record record = new Record(inputStream);
+						changes.add(() -> replayBirth(record));
+					}
+			} finally {
+				inputStream.close();
+			}
+			changes.forEach(Runnable::run);
+		}
+
+		// Replay is idempotent : the commits of the journal opened before a snapshot may already be in this snapshot
+		private void replayJournal(File journalFile) throws IOException, ClassNotFoundException {
+			Journal.read(journalFile, record -> {
+				inputStream = new ArchiverInputStream(new ByteArrayInputStream(record));
+				inputStream.readHeader();
+				long commitTs = inputStream.readVarLong();
+				for (byte tag = inputStream.readByte(); tag != JOURNAL_END; tag = inputStream.readByte())
+					if (tag == JOURNAL_KILL)
+						replayKill(inputStream.readTsRef(), commitTs);
+					else
+						replayBirth();
+			});
 		}
 
-		protected void loadDependency(Map<Long, Generic> vertexMap) throws IOException, ClassNotFoundException {
-			long ts = loadTs();
-			long[] otherTs = loadOtherTs();
-			if (otherTs[0] == LifeManager.TS_SYSTEM)
-				otherTs[0] = LifeManager.TS_OLD_SYSTEM;
-			Serializable value = (Serializable) objectInputStream.readObject();
-			Generic meta = loadAncestor(ts, vertexMap);
-			List<Generic> supers = loadAncestors(ts, vertexMap);
-			List<Generic> components = loadAncestors(ts, vertexMap);
-			vertexMap.put(ts, new SetArchiverHandler(ts, transaction, meta, supers, value, components, otherTs).resolve());
-			// log.info("load dependency : " + vertexMap.get(ts).info() + " " + ts + " " + vertexMap.get(ts).getTs() + " birthTs : " + vertexMap.get(ts).getLifeManager().getBirthTs());
-			assert getTransaction().isAlive(vertexMap.get(ts)) : vertexMap.get(ts).info();
+		// The deltas and the journals may hold changes after the recovery ts
+		protected void replayKill(long ts, long deathTs) {
+			Generic generic = vertexMap.get(ts);
+			if (generic != null && !generic.getLifeManager().willDie() && deathTs <= recoveryTs)
+				generic.getLifeManager().restoreDeathTs(deathTs);
 		}
 
-		protected List<Generic> loadAncestors(long ts, Map<Long, Generic> vertexMap) throws IOException {
-			List<Generic> ancestors = new ArrayList<>();
-			int sizeComponents = objectInputStream.readInt();
-			for (int j = 0; j < sizeComponents; j++)
-				ancestors.add(loadAncestor(ts, vertexMap));
+		protected void replayBirth() throws IOException, ClassNotFoundException {
+			replayBirth(new Record(inputStream));
+		}
+
+		private void replayBirth(Record record) {
+			if (vertexMap.containsKey(record.ts) || record.otherTs[0] > recoveryTs || !isResolved(record))
+				return;
+			Generic meta = record.metaTs == record.ts ? null : vertexMap.get(record.metaTs);
+			if (record.otherTs[0] <= LifeManager.TS_OLD_SYSTEM) {
+				record.otherTs[0] = LifeManager.TS_OLD_SYSTEM;
+				vertexMap.put(record.ts, new SetArchiverHandler(record.ts, transaction, meta, resolve(record.supersTs), record.value, resolve(record.componentsTs), record.otherTs).resolve());
+			} else
+				vertexMap.put(record.ts, transaction.buildAndPlug(record.ts, null, meta, resolve(record.supersTs), record.value, resolve(record.componentsTs), record.otherTs));
+		}
+
+		// An ancestor can be missing only if it has been killed by a commit that is replayed later
+		private boolean isResolved(Record record) {
+			if (record.metaTs != record.ts && !vertexMap.containsKey(record.metaTs))
+				return false;
+			for (long superTs : record.supersTs)
+				if (!vertexMap.containsKey(superTs))
+					return false;
+			for (long componentTs : record.componentsTs)
+				if (!vertexMap.containsKey(componentTs))
+					return false;
+			return true;
+		}
+
+		private List<Generic> resolve(long[] ancestorsTs) {
+			List<Generic> ancestors = new ArrayList<>(ancestorsTs.length);
+			for (long ancestorTs : ancestorsTs)
+				ancestors.add(vertexMap.get(ancestorTs));
 			return ancestors;
 		}
+	}
+
+	/**
+	 * Streams the generics alive at a ts in newline-delimited JSON : a header line, then one record per generic keyed by its ts, level by level. Only the generics are held in memory, not the text.
+	 *
+	 * A value is written with its type : string, int, long, short, double, float, boolean, bytes (base 64), class or axed ({"class", "axe"}).
+	 */
+	public class Exporter extends Saver {
+
+		protected Exporter(long ts) {
+			super(ts);
+		}
+
+		public void export(Writer writer) throws IOException {
+			writeLine(writer, Json.createObjectBuilder().add(EXPORT_FORMAT, EXPORT_VERSION).add("ts", transaction.getTs()).build());
+			List<List<Generic>> levels = computeLevels();
+			for (int level = 0; level < levels.size(); level++)
+				for (Generic generic : levels.get(level))
+					writeLine(writer, toJson(generic, level));
+			writer.flush();
+		}
+
+		private void writeLine(Writer writer, JsonObject json) throws IOException {
+			writer.write(json.toString());
+			writer.write('\n');
+		}
+
+		// The generics exported are alive at the ts of the export
+		private JsonObject toJson(Generic generic, int level) {
+			LifeManager lifeManager = generic.getLifeManager();
+			JsonObjectBuilder builder = Json.createObjectBuilder().add("ts", generic.getTs()).add("level", level).add("birthTs", lifeManager.getBirthTs()).add("lastReadTs", lifeManager.getLastReadTs());
+			if (generic.getMeta() != null && generic.getMeta() != generic)
+				builder.add("meta", generic.getMeta().getTs());
+			builder.add("supers", toJson(generic.getSupers())).add("components", toJson(generic.getComponents()));
+			Serializable value = generic.getValue();
+			if (value != null)
+				addValue(builder, value);
+			return builder.build();
+		}
+
+		private JsonArrayBuilder toJson(List<Generic> ancestors) {
+			JsonArrayBuilder builder = Json.createArrayBuilder();
+			for (Generic ancestor : ancestors)
+				builder.add(ancestor.getTs());
+			return builder;
+		}
 
-		protected Generic loadAncestor(long ts, Map<Long, Generic> vertexMap) throws IOException {
-			long designTs = objectInputStream.readLong();
-			Generic ancestor = vertexMap.get(designTs);
-			assert ancestor != null || designTs == ts;
-			return ancestor;
+		private void addValue(JsonObjectBuilder builder, Serializable value) {
+			if (value instanceof String)
+				builder.add("type", "string").add("value", (String) value);
+			else if (value instanceof Integer)
+				builder.add("type", "int").add("value", (Integer) value);
+			else if (value instanceof Long)
+				builder.add("type", "long").add("value", (Long) value);
+			else if (value instanceof Short)
+				builder.add("type", "short").add("value", (Short) value);
+			else if (value instanceof Double)
+				addFloating(builder.add("type", "double"), (Double) value);
+			else if (value instanceof Float)
+				addFloating(builder.add("type", "float"), (Float) value);
+			else if (value instanceof Boolean)
+				builder.add("type", "boolean").add("value", (Boolean) value);
+			else if (value instanceof byte[])
+				builder.add("type", "bytes").add("value", Base64.getEncoder().encodeToString((byte[]) value));
+			else if (value instanceof Class)
+				builder.add("type", "class").add("value", ((Class<?>) value).getName());
+			else if (value instanceof AxedPropertyClass)
+				builder.add("type", "axed").add("value", Json.createObjectBuilder().add("class", ((AxedPropertyClass) value).getClazz().getName()).add("axe", ((AxedPropertyClass) value).getAxe()));
+			else
+				throw new IllegalStateException("Unable to export value : " + value + " of " + value.getClass());
+		}
+
+		// NaN and infinities are not JSON numbers
+		private void addFloating(JsonObjectBuilder builder, double value) {
+			if (Double.isNaN(value) || Double.isInfinite(value))
+				builder.add("value", Double.toString(value));
+			else
+				builder.add("value", value);
 		}
 	}
 
-	protected static class ZipFileManager {
+	/**
+	 * Reads the records written by an {@link Exporter} in batches of at most SEGMENT_SIZE generics of a level. The generics are built without handler nor checker, then the constraints are checked once all of them are imported : on a
+	 * violation, the imported generics are removed and forgotten, then the RollbackException is thrown.
+	 *
+	 * The generics keep their ts, their births are back-dated : the root must be quiescent, no cache may read it or commit to it during the import. The root must hold only its system generics, which is checked, and the
+	 * system generics are write locked in ts order for the whole import : the commits and the end of the iterations under them wait for it. The imported generics are saved by the next snapshot.
+	 */
+	public class Importer extends Loader {
+
+		private final List<Generic> imported = new ArrayList<>();
+
+		protected Importer() {
+		}
+
+		public void importGraph(Reader reader) throws IOException, ClassNotFoundException {
+			List<LifeManager> locked = new ArrayList<>();
+			try {
+				NavigableMap<Long, Generic> systemGenerics = new TreeMap<>();
+				root.getSystemGenerics().forEach(generic -> systemGenerics.put(generic.getTs(), generic));
+				for (Generic generic : systemGenerics.values()) {
+					generic.getLifeManager().writeLock(Statics.LOCK_TIMEOUT);
+					locked.add(generic.getLifeManager());
+				}
+				if (!root.holdsOnlySystemGenerics())
+					throw new IllegalStateException("An import requires a root that holds only its system generics");
+				doImportGraph(reader);
+			} catch (ConcurrencyControlException e) {
+				throw new IllegalStateException("Unable to lock the system generics for the import", e);
+			} finally {
+				locked.forEach(LifeManager::writeUnlock);
+			}
+		}
+
+		private void doImportGraph(Reader reader) throws IOException, ClassNotFoundException {
+			BufferedReader bufferedReader = new BufferedReader(reader, 1 << 16);
+			String header = bufferedReader.readLine();
+			if (header == null || read(header).getInt(EXPORT_FORMAT, 0) != EXPORT_VERSION)
+				throw new StreamCorruptedException("Not a Generic System export");
+			List<Record> batch = new ArrayList<>();
+			int level = 0;
+			for (String line = bufferedReader.readLine(); line != null; line = bufferedReader.readLine())
+				if (!line.isEmpty()) {
+					JsonObject json = read(line);
+					if (!batch.isEmpty() && (json.getInt("level") != level || batch.size() == SnapshotFile.SEGMENT_SIZE)) {
+						loadBatch(batch);
+						batch.clear();
+					}
+					level = json.getInt("level");
+					batch.add(toRecord(json));
+				}
+			loadBatch(batch);
+			check();
+		}
+
+		private JsonObject read(String line) throws StreamCorruptedException {
+			try (JsonReader jsonReader = Json.createReader(new StringReader(line))) {
+				return jsonReader.readObject();
+			} catch (JsonException e) {
+				throw new StreamCorruptedException("Malformed record : " + line);
+			}
+		}
+
+		private void loadBatch(List<Record> batch) {
+			loadLevel(batch);
+			for (Record record : batch)
+				if (record.generic != null)
+					imported.add(record.generic);
+		}
+
+		private void check() {
+			try {
+				for (Generic generic : imported)
+					transaction.getChecker().checkAfterBuild(true, true, generic);
+			} catch (RollbackException e) {
+				long ts = root.pickNewTs();
+				for (int i = imported.size() - 1; i >= 0; i--) {
+					transaction.unindex(imported.get(i));
+					imported.get(i).getLifeManager().restoreDeathTs(ts);
+					root.forget(imported.get(i));
+				}
+				throw e;
+			}
+			imported.forEach(root::notifyChange);
+		}
+
+		private Record toRecord(JsonObject json) throws ClassNotFoundException {
+			long ts = json.getJsonNumber("ts").longValue();
+			long[] otherTs = new long[] { json.getJsonNumber("birthTs").longValue(), json.getJsonNumber("lastReadTs").longValue(), Long.MAX_VALUE };
+			long metaTs = json.containsKey("meta") ? json.getJsonNumber("meta").longValue() : ts;
+			return new Record(ts, otherTs, json.containsKey("type") ? readValue(json) : null, metaTs, toTs(json.getJsonArray("supers")), toTs(json.getJsonArray("components")));
+		}
+
+		private long[] toTs(JsonArray array) {
+			long[] ts = new long[array.size()];
+			for (int i = 0; i < ts.length; i++)
+				ts[i] = array.getJsonNumber(i).longValue();
+			return ts;
+		}
+
+		private Serializable readValue(JsonObject json) throws ClassNotFoundException {
+			switch (json.getString("type")) {
+			case "string":
+				return json.getString("value");
+			case "int":
+				return json.getInt("value");
+			case "long":
+				return json.getJsonNumber("value").longValue();
+			case "short":
+				return (short) json.getInt("value");
+			case "double":
+				return readFloating(json.get("value"));
+			case "float":
+				return (float) readFloating(json.get("value"));
+			case "boolean":
+				return json.getBoolean("value");
+			case "bytes":
+				return Base64.getDecoder().decode(json.getString("value"));
+			case "class":
+				return ArchiverInputStream.forName(json.getString("value"));
+			case "axed":
+				JsonObject axed = json.getJsonObject("value");
+				return new AxedPropertyClass(ArchiverInputStream.forName(axed.getString("class")).asSubclass(SystemProperty.class), axed.getInt("axe"));
+			default:
+				throw new IllegalStateException("Unknown value type : " + json.getString("type"));
+			}
+		}
+
+		private double readFloating(JsonValue value) {
+			return value instanceof JsonString ? Double.parseDouble(((JsonString) value).getString()) : ((JsonNumber) value).doubleValue();
+		}
+	}
+
+	private static class Record {
+
+		private final long ts;
+		private final long[] otherTs;
+		private final Serializable value;
+		private final long metaTs;
+		private final long[] supersTs;
+		private final long[] componentsTs;
+		private Generic generic;
+
+		private Record(long ts, long[] otherTs, Serializable value, long metaTs, long[] supersTs, long[] componentsTs) {
+			this.ts = ts;
+			this.otherTs = otherTs;
+			this.value = value;
+			this.metaTs = metaTs;
+			this.supersTs = supersTs;
+			this.componentsTs = componentsTs;
+		}
+
+		private Record(ArchiverInputStream inputStream) throws IOException, ClassNotFoundException {
+			ts = inputStream.readDeclaredTs();
+			otherTs = inputStream.readOtherTs(ts);
+			value = inputStream.readValue();
+			metaTs = inputStream.readTsRef();
+			supersTs = readAncestorsTs(inputStream);
+			componentsTs = readAncestorsTs(inputStream);
+		}
+
+		private static long[] readAncestorsTs(ArchiverInputStream inputStream) throws IOException {
+			long[] ancestorsTs = new long[inputStream.readVarInt()];
+			for (int i = 0; i < ancestorsTs.length; i++)
+				ancestorsTs[i] = inputStream.readTsRef();
+			return ancestorsTs;
+		}
+	}
+
+	// A compressed file starts with the id of its codec
+	protected static class CompressedFileManager {
 
 		private final FileManager fileManager;
 
-		protected ZipFileManager(FileManager fileManager) {
+		protected CompressedFileManager(FileManager fileManager) {
 			this.fileManager = fileManager;
 		}
 
-		protected ObjectOutputStream getObjectOutputStream(String zipFileName, String fileName) throws IOException {
-			ZipOutputStream zipOutput = new ZipOutputStream(fileManager.getFileOutputStream(zipFileName));
-			zipOutput.putNextEntry(new ZipEntry(fileName));
-			return new ObjectOutputStream(zipOutput);
+		ArchiverOutputStream getOutputStream(String fileName, Codec codec) throws IOException {
+			OutputStream outputStream = fileManager.getFileOutputStream(fileName);
+			outputStream.write(codec.getId());
+			return new ArchiverOutputStream(new BufferedOutputStream(codec.compress(outputStream), 1 << 16));
 		}
 
-		protected ObjectInputStream getObjectInputStream(String fileName) throws IOException {
-			ZipInputStream inputStream = new ZipInputStream(fileManager.getFileInputStream(fileName));
-			inputStream.getNextEntry();
-			return new ObjectInputStream(inputStream);
+		ArchiverInputStream getInputStream(String fileName, Codec configured) throws IOException {
+			InputStream inputStream = fileManager.getFileInputStream(fileName);
+			int id = inputStream.read();
+			if (id < 0)
+				throw new EOFException("Empty file : " + fileName);
+			return new ArchiverInputStream(new BufferedInputStream(Codec.get((byte) id, configured).decompress(inputStream), 1 << 16));
 		}
 	}
 
 	protected static class FileManager {
 
+		// A delta must be on disk before the journals it replaces are deleted
 		protected FileOutputStream getFileOutputStream(String fileName) throws IOException {
-			return new FileOutputStream(fileName);
+			return new FileOutputStream(fileName) {
+				@Override
+				public void close() throws IOException {
+					getFD().sync();
+					super.close();
+				}
+			};
 		}
 
 		protected FileInputStream getFileInputStream(String fileName) throws IOException {
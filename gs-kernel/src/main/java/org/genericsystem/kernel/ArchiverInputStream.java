@@ -0,0 +1,179 @@
+package org.genericsystem.kernel;
+
+import static org.genericsystem.kernel.ArchiverOutputStream.AXED_PROPERTY_CLASS;
+import static org.genericsystem.kernel.ArchiverOutputStream.BYTES;
+import static org.genericsystem.kernel.ArchiverOutputStream.CLASS;
+import static org.genericsystem.kernel.ArchiverOutputStream.DOUBLE;
+import static org.genericsystem.kernel.ArchiverOutputStream.EXTERNAL_TS;
+import static org.genericsystem.kernel.ArchiverOutputStream.FALSE;
+import static org.genericsystem.kernel.ArchiverOutputStream.FLOAT;
+import static org.genericsystem.kernel.ArchiverOutputStream.INTEGER;
+import static org.genericsystem.kernel.ArchiverOutputStream.LONG;
+import static org.genericsystem.kernel.ArchiverOutputStream.MAGIC;
+import static org.genericsystem.kernel.ArchiverOutputStream.NULL;
+import static org.genericsystem.kernel.ArchiverOutputStream.SHORT;
+import static org.genericsystem.kernel.ArchiverOutputStream.STRING;
+import static org.genericsystem.kernel.ArchiverOutputStream.STRING_REF;
+import static org.genericsystem.kernel.ArchiverOutputStream.TRUE;
+import static org.genericsystem.kernel.ArchiverOutputStream.VERSION;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.genericsystem.api.core.AxedPropertyClass;
+import org.genericsystem.api.core.IVertex.SystemProperty;
+
+/**
+ * Reads the binary format written by an {@link ArchiverOutputStream}.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+class ArchiverInputStream extends DataInputStream {
+
+	private final List<Long> declaredTs = new ArrayList<>();
+	private long lastDeclaredTs;
+	private final List<String> strings = new ArrayList<>();
+	private final List<Class<?>> classes = new ArrayList<>();
+
+	ArchiverInputStream(InputStream in) {
+		super(in);
+	}
+
+	void readHeader() throws IOException {
+		if (readInt() != MAGIC)
+			throw new StreamCorruptedException("Not a Generic System archive");
+		byte version = readByte();
+		if (version != VERSION)
+			throw new StreamCorruptedException("Unsupported archive format version : " + version);
+	}
+
+	long readVarLong() throws IOException {
+		long value = 0L;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new StreamCorruptedException("Malformed varint");
+	}
+
+	int readVarInt() throws IOException {
+		return (int) readVarLong();
+	}
+
+	long readZigZag() throws IOException {
+		return unZigZag(readVarLong());
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private String readUtf8() throws IOException {
+		byte[] bytes = new byte[readVarInt()];
+		readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	long readDeclaredTs() throws IOException {
+		lastDeclaredTs += readZigZag();
+		declaredTs.add(lastDeclaredTs);
+		return lastDeclaredTs;
+	}
+
+	long readTsRef() throws IOException {
+		int position = readVarInt();
+		if (position == EXTERNAL_TS)
+			return readVarLong();
+		if (position > declaredTs.size())
+			throw new StreamCorruptedException("Reference to an undeclared generic : " + position);
+		return declaredTs.get(position - 1);
+	}
+
+	long[] readOtherTs(long ts) throws IOException {
+		long birthTs = ts + readZigZag();
+		long lastReadTs = birthTs + readZigZag();
+		long deathTs = readVarLong();
+		return new long[] { birthTs, lastReadTs, deathTs == 0L ? Long.MAX_VALUE : birthTs + unZigZag(deathTs - 1) };
+	}
+
+	Serializable readValue() throws IOException, ClassNotFoundException {
+		byte tag = readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			String string = readUtf8();
+			strings.add(string);
+			return string;
+		case STRING_REF:
+			return strings.get(readVarInt());
+		case INTEGER:
+			return (int) readZigZag();
+		case LONG:
+			return readZigZag();
+		case SHORT:
+			return (short) readZigZag();
+		case DOUBLE:
+			return readDouble();
+		case FLOAT:
+			return readFloat();
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case BYTES:
+			byte[] bytes = new byte[readVarInt()];
+			readFully(bytes);
+			return bytes;
+		case CLASS:
+			return readClass();
+		case AXED_PROPERTY_CLASS:
+			return new AxedPropertyClass(readClass().asSubclass(SystemProperty.class), (int) readZigZag());
+		default:
+			throw new StreamCorruptedException("Unknown value tag : " + tag);
+		}
+	}
+
+	private Class<?> readClass() throws IOException, ClassNotFoundException {
+		int position = readVarInt();
+		if (position != 0)
+			return classes.get(position - 1);
+		Class<?> clazz = forName(readUtf8());
+		classes.add(clazz);
+		return clazz;
+	}
+
+	static Class<?> forName(String name) throws ClassNotFoundException {
+		switch (name) {
+		case "boolean":
+			return boolean.class;
+		case "byte":
+			return byte.class;
+		case "char":
+			return char.class;
+		case "short":
+			return short.class;
+		case "int":
+			return int.class;
+		case "long":
+			return long.class;
+		case "float":
+			return float.class;
+		case "double":
+			return double.class;
+		case "void":
+			return void.class;
+		}
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return Class.forName(name, false, classLoader != null ? classLoader : ArchiverInputStream.class.getClassLoader());
+	}
+}
@@ -0,0 +1,169 @@
+package org.genericsystem.kernel;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.genericsystem.api.core.AxedPropertyClass;
+
+/**
+ * Binary format of the snapshots, deltas and journal records.
+ *
+ * Integers are written as varints. The ts of the generics declared in the stream are written as a difference with the previous declared one and their ancestors are referenced by their position in the stream. Strings and classes are
+ * written once and then referenced by their position in a dictionary. Values are prefixed by a tag of their type, only the types allowed by the Checker are supported.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+class ArchiverOutputStream extends DataOutputStream {
+
+	static final int MAGIC = 0x47534E50;
+	static final byte VERSION = 1;
+
+	static final byte NULL = 0;
+	static final byte STRING = 1;
+	static final byte STRING_REF = 2;
+	static final byte INTEGER = 3;
+	static final byte LONG = 4;
+	static final byte SHORT = 5;
+	static final byte DOUBLE = 6;
+	static final byte FLOAT = 7;
+	static final byte TRUE = 8;
+	static final byte FALSE = 9;
+	static final byte BYTES = 10;
+	static final byte CLASS = 11;
+	static final byte AXED_PROPERTY_CLASS = 12;
+
+	// Position 0 is reserved for the ts written in full : the generics declared in a previous file
+	static final int EXTERNAL_TS = 0;
+
+	private final Map<Long, Integer> declaredTs = new HashMap<>();
+	private long lastDeclaredTs;
+	private final Map<String, Integer> strings = new HashMap<>();
+	private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+	ArchiverOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	void writeHeader() throws IOException {
+		writeInt(MAGIC);
+		writeByte(VERSION);
+	}
+
+	void writeVarLong(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		writeByte((int) value);
+	}
+
+	void writeVarInt(int value) throws IOException {
+		writeVarLong(value & 0xFFFFFFFFL);
+	}
+
+	void writeZigZag(long value) throws IOException {
+		writeVarLong(zigZag(value));
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private void writeUtf8(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		write(bytes);
+	}
+
+	void declareTs(long ts) throws IOException {
+		writeZigZag(ts - lastDeclaredTs);
+		lastDeclaredTs = ts;
+		declaredTs.put(ts, declaredTs.size() + 1);
+	}
+
+	void writeTsRef(long ts) throws IOException {
+		Integer position = declaredTs.get(ts);
+		if (position != null)
+			writeVarInt(position);
+		else {
+			writeVarInt(EXTERNAL_TS);
+			writeVarLong(ts);
+		}
+	}
+
+	// birthTs, lastReadTs and deathTs are close to each other, a deathTs of 0 stands for a generic that will not die
+	void writeOtherTs(long ts, long birthTs, long lastReadTs, long deathTs) throws IOException {
+		writeZigZag(birthTs - ts);
+		writeZigZag(lastReadTs - birthTs);
+		if (deathTs == Long.MAX_VALUE)
+			writeVarLong(0L);
+		else
+			writeVarLong(zigZag(deathTs - birthTs) + 1);
+	}
+
+	void writeValue(Serializable value) throws IOException {
+		if (value == null)
+			writeByte(NULL);
+		else if (value instanceof String)
+			writeString((String) value);
+		else if (value instanceof Integer) {
+			writeByte(INTEGER);
+			writeZigZag((Integer) value);
+		} else if (value instanceof Long) {
+			writeByte(LONG);
+			writeZigZag((Long) value);
+		} else if (value instanceof Short) {
+			writeByte(SHORT);
+			writeZigZag((Short) value);
+		} else if (value instanceof Double) {
+			writeByte(DOUBLE);
+			writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			writeByte(FLOAT);
+			writeFloat((Float) value);
+		} else if (value instanceof Boolean)
+			writeByte((Boolean) value ? TRUE : FALSE);
+		else if (value instanceof byte[]) {
+			writeByte(BYTES);
+			writeVarInt(((byte[]) value).length);
+			write((byte[]) value);
+		} else if (value instanceof Class) {
+			writeByte(CLASS);
+			writeClass((Class<?>) value);
+		} else if (value instanceof AxedPropertyClass) {
+			writeByte(AXED_PROPERTY_CLASS);
+			writeClass(((AxedPropertyClass) value).getClazz());
+			writeZigZag(((AxedPropertyClass) value).getAxe());
+		} else
+			throw new IllegalStateException("Not allowed type for serializable : " + value.getClass());
+	}
+
+	private void writeString(String value) throws IOException {
+		Integer position = strings.get(value);
+		if (position != null) {
+			writeByte(STRING_REF);
+			writeVarInt(position);
+		} else {
+			writeByte(STRING);
+			writeUtf8(value);
+			strings.put(value, strings.size());
+		}
+	}
+
+	private void writeClass(Class<?> clazz) throws IOException {
+		Integer position = classes.get(clazz);
+		if (position != null)
+			writeVarInt(position + 1);
+		else {
+			writeVarInt(0);
+			writeUtf8(clazz.getName());
+			classes.put(clazz, classes.size());
+		}
+	}
+}
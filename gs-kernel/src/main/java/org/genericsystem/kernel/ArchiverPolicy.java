@@ -0,0 +1,181 @@
+package org.genericsystem.kernel;
+
+import java.util.zip.Deflater;
+
+/**
+ * Scheduling and retention of the snapshots of an {@link Archiver}. A policy must be configured before the engine is built.
+ *
+ * A snapshot is taken every period and, if set, as soon as a number of commits or of journal bytes has been reached since the previous one. The old snapshots are thinned out : the interval kept between two snapshots grows with their age
+ * divided by the retention coefficient. The thinning never removes the last snapshot and the previous one : the previous one is the fallback if the last one is corrupted, and it is kept with its deltas and journals.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class ArchiverPolicy {
+
+	private long period = 1000L;
+	private long initialDelay = 1000L;
+	private long commitsBeforeSnapshot = 0L;
+	private long bytesBeforeSnapshot = 0L;
+	private double retentionCoefficient = 5d;
+	private int maxSnapshots = Integer.MAX_VALUE;
+	private int deltasBeforeFullSnapshot = 20;
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	private long bytesPerSecond = 32L << 20;
+	private Codec codec;
+
+	public long getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @param period
+	 *            the period of the snapshots in milliseconds, 0 to take snapshots only on the commits and bytes triggers.
+	 * @return this policy.
+	 */
+	public ArchiverPolicy setPeriod(long period) {
+		if (period < 0L)
+			throw new IllegalArgumentException("Negative period : " + period);
+		this.period = period;
+		return this;
+	}
+
+	public long getInitialDelay() {
+		return initialDelay;
+	}
+
+	public ArchiverPolicy setInitialDelay(long initialDelay) {
+		if (initialDelay < 0L)
+			throw new IllegalArgumentException("Negative initial delay : " + initialDelay);
+		this.initialDelay = initialDelay;
+		return this;
+	}
+
+	public long getCommitsBeforeSnapshot() {
+		return commitsBeforeSnapshot;
+	}
+
+	/**
+	 * @param commitsBeforeSnapshot
+	 *            the number of commits that triggers a snapshot, 0 for no trigger.
+	 * @return this policy.
+	 */
+	public ArchiverPolicy setCommitsBeforeSnapshot(long commitsBeforeSnapshot) {
+		if (commitsBeforeSnapshot < 0L)
+			throw new IllegalArgumentException("Negative commits number : " + commitsBeforeSnapshot);
+		this.commitsBeforeSnapshot = commitsBeforeSnapshot;
+		return this;
+	}
+
+	public long getBytesBeforeSnapshot() {
+		return bytesBeforeSnapshot;
+	}
+
+	/**
+	 * @param bytesBeforeSnapshot
+	 *            the number of bytes written in the journal that triggers a snapshot, 0 for no trigger.
+	 * @return this policy.
+	 */
+	public ArchiverPolicy setBytesBeforeSnapshot(long bytesBeforeSnapshot) {
+		if (bytesBeforeSnapshot < 0L)
+			throw new IllegalArgumentException("Negative bytes number : " + bytesBeforeSnapshot);
+		this.bytesBeforeSnapshot = bytesBeforeSnapshot;
+		return this;
+	}
+
+	public double getRetentionCoefficient() {
+		return retentionCoefficient;
+	}
+
+	/**
+	 * @param retentionCoefficient
+	 *            the higher it is, the more old snapshots are kept.
+	 * @return this policy.
+	 */
+	public ArchiverPolicy setRetentionCoefficient(double retentionCoefficient) {
+		if (retentionCoefficient <= 0d)
+			throw new IllegalArgumentException("Retention coefficient must be positive : " + retentionCoefficient);
+		this.retentionCoefficient = retentionCoefficient;
+		return this;
+	}
+
+	public int getMaxSnapshots() {
+		return maxSnapshots;
+	}
+
+	/**
+	 * @param maxSnapshots
+	 *            the maximum number of full snapshots kept on disk, the oldest ones are removed first. With 1, a corrupted snapshot has no fallback.
+	 * @return this policy.
+	 */
+	public ArchiverPolicy setMaxSnapshots(int maxSnapshots) {
+		if (maxSnapshots < 1)
+			throw new IllegalArgumentException("At least one snapshot must be kept : " + maxSnapshots);
+		this.maxSnapshots = maxSnapshots;
+		return this;
+	}
+
+	public int getDeltasBeforeFullSnapshot() {
+		return deltasBeforeFullSnapshot;
+	}
+
+	/**
+	 * @param deltasBeforeFullSnapshot
+	 *            the number of delta snapshots between two full ones, 0 for full snapshots only.
+	 * @return this policy.
+	 */
+	public ArchiverPolicy setDeltasBeforeFullSnapshot(int deltasBeforeFullSnapshot) {
+		if (deltasBeforeFullSnapshot < 0)
+			throw new IllegalArgumentException("Negative deltas number : " + deltasBeforeFullSnapshot);
+		this.deltasBeforeFullSnapshot = deltasBeforeFullSnapshot;
+		return this;
+	}
+
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * @param compressionLevel
+	 *            a deflate level, from Deflater.NO_COMPRESSION to Deflater.BEST_COMPRESSION, or Deflater.DEFAULT_COMPRESSION.
+	 * @return this policy.
+	 */
+	public ArchiverPolicy setCompressionLevel(int compressionLevel) {
+		if ((compressionLevel < Deflater.NO_COMPRESSION && compressionLevel != Deflater.DEFAULT_COMPRESSION) || compressionLevel > Deflater.BEST_COMPRESSION)
+			throw new IllegalArgumentException("Invalid compression level : " + compressionLevel);
+		this.compressionLevel = compressionLevel;
+		return this;
+	}
+
+	public Codec getCodec() {
+		return codec != null ? codec : Codec.deflate(compressionLevel);
+	}
+
+	/**
+	 * @param codec
+	 *            the codec of the snapshots and of the deltas, a deflate of the compression level if not set.
+	 * @return this policy.
+	 */
+	public ArchiverPolicy setCodec(Codec codec) {
+		if (codec == null)
+			throw new IllegalArgumentException("Codec must not be null");
+		this.codec = codec;
+		return this;
+	}
+
+	public long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * @param bytesPerSecond
+	 *            the maximum throughput of the background snapshots, Long.MAX_VALUE for no limit.
+	 * @return this policy.
+	 */
+	public ArchiverPolicy setBytesPerSecond(long bytesPerSecond) {
+		if (bytesPerSecond <= 0L)
+			throw new IllegalArgumentException("Throughput must be positive : " + bytesPerSecond);
+		this.bytesPerSecond = bytesPerSecond;
+		return this;
+	}
+}
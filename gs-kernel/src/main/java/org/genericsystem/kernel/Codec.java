@@ -0,0 +1,124 @@
+package org.genericsystem.kernel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of the snapshot files. The id of the codec is recorded in the header of each file, so that a file is read back with the codec it has been written with, whatever the current configuration.
+ *
+ * The ids from 0 to 15 are reserved for the codecs of Generic System : NONE, DEFLATE and LZ.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public interface Codec {
+
+	static final byte NONE_ID = 0;
+	static final byte DEFLATE_ID = 1;
+	static final byte LZ_ID = 2;
+
+	static final Codec NONE = new Codec() {
+
+		@Override
+		public byte getId() {
+			return NONE_ID;
+		}
+
+		@Override
+		public OutputStream compress(OutputStream outputStream) {
+			return outputStream;
+		}
+
+		@Override
+		public InputStream decompress(InputStream inputStream) {
+			return inputStream;
+		}
+	};
+
+	/**
+	 * Block-based LZ codec : cheap in CPU, for the hot nodes.
+	 */
+	static final Codec LZ = new LzCodec();
+
+	byte getId();
+
+	/**
+	 * @param outputStream
+	 *            the stream receiving the compressed bytes.
+	 * @return a stream to write the raw bytes to, closing it closes the outputStream.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	OutputStream compress(OutputStream outputStream) throws IOException;
+
+	/**
+	 * @param inputStream
+	 *            the stream of the compressed bytes.
+	 * @return a stream to read the raw bytes from, closing it closes the inputStream.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	InputStream decompress(InputStream inputStream) throws IOException;
+
+	/**
+	 * @param level
+	 *            a deflate level, from Deflater.BEST_SPEED for a fast deflate to Deflater.BEST_COMPRESSION for archival.
+	 * @return a deflate codec.
+	 */
+	static Codec deflate(int level) {
+		return new DeflateCodec(level);
+	}
+
+	static Codec get(byte id, Codec configured) throws StreamCorruptedException {
+		if (configured != null && configured.getId() == id)
+			return configured;
+		switch (id) {
+		case NONE_ID:
+			return NONE;
+		case DEFLATE_ID:
+			return deflate(Deflater.DEFAULT_COMPRESSION);
+		case LZ_ID:
+			return LZ;
+		default:
+			throw new StreamCorruptedException("Unknown codec : " + id);
+		}
+	}
+
+	static class DeflateCodec implements Codec {
+
+		private final int level;
+
+		private DeflateCodec(int level) {
+			this.level = level;
+		}
+
+		@Override
+		public byte getId() {
+			return DEFLATE_ID;
+		}
+
+		@Override
+		public OutputStream compress(OutputStream outputStream) {
+			return new DeflaterOutputStream(outputStream, new Deflater(level), 1 << 16) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						def.end();
+					}
+				}
+			};
+		}
+
+		@Override
+		public InputStream decompress(InputStream inputStream) {
+			return new InflaterInputStream(inputStream);
+		}
+	}
+}
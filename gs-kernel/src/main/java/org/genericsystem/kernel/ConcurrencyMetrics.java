@@ -0,0 +1,99 @@
+package org.genericsystem.kernel;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Counters of the commit conflicts of a root : a conflict is a commit that has failed its MVCC check or has not been able to lock a generic. The conflicts are counted per generic and per meta of the generic, so that the hot spots of
+ * a data model can be found.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class ConcurrencyMetrics {
+
+	private final LongAdder flushes = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder conflicts = new LongAdder();
+	// Weak keys : the counters do not keep the generics forgotten by the garbage collector
+	private final Map<Generic, LongAdder> conflictsByGeneric = Collections.synchronizedMap(new WeakHashMap<>());
+	private final Map<Generic, LongAdder> conflictsByMeta = Collections.synchronizedMap(new WeakHashMap<>());
+	private volatile long since = System.currentTimeMillis();
+
+	public void onFlush() {
+		flushes.increment();
+	}
+
+	public void onRetry() {
+		retries.increment();
+	}
+
+	void onConflict(Generic generic) {
+		conflicts.increment();
+		conflictsByGeneric.computeIfAbsent(generic, x -> new LongAdder()).increment();
+		conflictsByMeta.computeIfAbsent(generic.getMeta(), x -> new LongAdder()).increment();
+	}
+
+	public long getFlushes() {
+		return flushes.sum();
+	}
+
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	public long getConflicts() {
+		return conflicts.sum();
+	}
+
+	public double getConflictsPerSecond() {
+		return getConflicts() * 1000d / Math.max(1L, System.currentTimeMillis() - since);
+	}
+
+	public double getRetriesPerFlush() {
+		long flushes = getFlushes();
+		return flushes == 0L ? 0d : (double) getRetries() / flushes;
+	}
+
+	public long getConflicts(Generic generic) {
+		LongAdder count = conflictsByGeneric.get(generic);
+		return count != null ? count.sum() : 0L;
+	}
+
+	/**
+	 * @return the number of conflicts on the instances of each meta.
+	 */
+	public Map<Generic, Long> getConflictsByMeta() {
+		return sums(conflictsByMeta);
+	}
+
+	/**
+	 * @param max
+	 *            the max number of generics returned.
+	 * @return the generics with the most conflicts, the most contended first.
+	 */
+	public List<Generic> getHottestGenerics(int max) {
+		return sums(conflictsByGeneric).entrySet().stream().sorted((entry1, entry2) -> Long.compare(entry2.getValue(), entry1.getValue())).limit(max).map(Entry::getKey).collect(Collectors.toList());
+	}
+
+	// The counters are summed once : they may change while sorted
+	private static Map<Generic, Long> sums(Map<Generic, LongAdder> counters) {
+		synchronized (counters) {
+			return Collections.unmodifiableMap(counters.entrySet().stream().collect(Collectors.toMap(Entry::getKey, entry -> entry.getValue().sum())));
+		}
+	}
+
+	public void reset() {
+		flushes.reset();
+		retries.reset();
+		conflicts.reset();
+		conflictsByGeneric.clear();
+		conflictsByMeta.clear();
+		since = System.currentTimeMillis();
+	}
+}
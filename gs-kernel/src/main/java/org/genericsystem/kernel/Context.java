@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.genericsystem.api.core.Snapshot;
 import org.genericsystem.defaults.DefaultContext;
@@ -110,7 +111,36 @@ public abstract class Context implements DefaultContext<Generic> {
 	}
 
 	@Override
-	abstract public Snapshot<Generic> getDependencies(Generic generic);
+	abstract public Snapshot<Generic> getInstances(Generic generic);
+
+	@Override
+	abstract public Snapshot<Generic> getInheritings(Generic generic);
+
+	@Override
+	abstract public Snapshot<Generic> getComposites(Generic generic);
+
+	// The union of the indexes : a dependency in several of them is returned once
+	@Override
+	public Snapshot<Generic> getDependencies(Generic generic) {
+		Snapshot<Generic> instances = getInstances(generic);
+		Snapshot<Generic> inheritings = getInheritings(generic);
+		Snapshot<Generic> composites = getComposites(generic);
+		return new Snapshot<Generic>() {
+
+			@Override
+			public Stream<Generic> stream() {
+				return Stream.concat(Stream.concat(instances.stream(), inheritings.stream()), composites.stream()).distinct();
+			}
+
+			@Override
+			public Generic get(Object o) {
+				Generic result = instances.get(o);
+				if (result == null)
+					result = inheritings.get(o);
+				return result != null ? result : composites.get(o);
+			}
+		};
+	}
 
 	Generic buildAndPlug(Class<?> clazz, Generic meta, List<Generic> supers, Serializable value, List<Generic> components) {
 		return buildAndPlug(Context.this.getRoot().pickNewTs(), clazz, meta, supers, value, components, getRoot().isInitialized() ? LifeManager.USER_TS : LifeManager.SYSTEM_TS);
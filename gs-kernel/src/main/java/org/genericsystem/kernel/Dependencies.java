@@ -1,5 +1,6 @@
 package org.genericsystem.kernel;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
@@ -10,12 +11,58 @@ import org.genericsystem.kernel.iterator.AbstractAwareIterator;
 
 public abstract class Dependencies {
 
-	private Generic head = null;
-	private Generic tail = null;
-	private final ConcurrentHashMap<Generic, Generic> map = new ConcurrentHashMap<>();
+	// The dependencies of an ancestor that has none of a kind : shared, never added to, its reads are not tracked
+	static final Dependencies EMPTY = new Dependencies() {
+		@Override
+		public Generic getAncestor() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		int getIndex(Generic dependency) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Stream<Generic> stream(long ts) {
+			return Stream.empty();
+		}
+
+		@Override
+		public Generic get(Object generic, long ts) {
+			return null;
+		}
+
+		@Override
+		public void add(Generic add) {
+			throw new UnsupportedOperationException("Shared empty dependencies");
+		}
+
+		@Override
+		public Iterator<Generic> iterator(long ts) {
+			return Collections.emptyIterator();
+		}
+	};
+
+	// Readers follow the links without lock, writers are serialized by the write lock of the ancestor
+	private volatile Generic head = null;
+	private volatile Generic tail = null;
+	// The previous dependency of each dependency, the dependency itself for the head : a dependency is unlinked without walking the list. Allocated on the first add : most of the generics have no dependency
+	private volatile ConcurrentHashMap<Generic, Generic> map;
 
 	public abstract Generic getAncestor();
 
+	// The position of the link of a dependency to this list in its vertex
+	abstract int getIndex(Generic dependency);
+
+	private Generic getNext(Generic dependency) {
+		return dependency.getRoot().getNextDependency(dependency, getIndex(dependency));
+	}
+
+	private void setNext(Generic dependency, Generic next) {
+		dependency.getRoot().setNextDependency(dependency, getIndex(dependency), next);
+	}
+
 	private final LifeManager getLifeManager() {
 		return getAncestor().getLifeManager();
 	}
@@ -24,13 +71,18 @@ public abstract class Dependencies {
 		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(ts), 0), false);
 	}
 
+	private Generic mapGet(Object generic) {
+		ConcurrentHashMap<Generic, Generic> map = this.map;
+		return map != null && map.containsKey(generic) ? (Generic) generic : null;
+	}
+
 	public Generic get(Object generic, long ts) {
-		Generic result = map.get(generic);// this no lock read requires a concurrent hash map
+		Generic result = mapGet(generic);// this no lock read requires a concurrent hash map
 		if (result == null) {
 			LifeManager lifeManager = getLifeManager();
 			lifeManager.readLock();
 			try {
-				result = map.get(generic);
+				result = mapGet(generic);
 				lifeManager.atomicAdjustLastReadTs(ts);
 			} finally {
 				lifeManager.readUnlock();
@@ -39,47 +91,85 @@ public abstract class Dependencies {
 		return result != null && result.getLifeManager().isAlive(ts) ? result : null;
 	}
 
+	Stream<Generic> untrackedStream(long ts) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new UntrackedIterator(ts), 0), false);
+	}
+
+	Generic untrackedGet(Object generic, long ts) {
+		Generic result = mapGet(generic);
+		return result != null && result.getLifeManager().isAliveUntracked(ts) ? result : null;
+	}
+
 	public void add(Generic add) {
 		assert add != null;
 		// TODO active this
 		// assert !add.getRoot().isInitialized() || getLifeManager().isWriteLockedByCurrentThread();
-		if (head == null)
+		if (map == null)
+			map = new ConcurrentHashMap<>();
+		// A dependency removed then added again takes back its place before its first next still linked : an iteration positioned on it goes on
+		Generic next = getNext(add);
+		while (next != null && !map.containsKey(next))
+			next = getNext(next);
+		if (next != null) {
+			insertBefore(add, next);
+			return;
+		}
+		setNext(add, null);
+		Generic previous = tail;
+		Generic result = map.put(add, previous != null ? previous : add);
+		assert result == null : result.info();
+		if (previous == null)
 			head = add;
 		else
-			tail.getRoot().setNextDependency(tail, getAncestor(), add);
+			setNext(previous, add);
 		tail = add;
-		Generic result = map.put(add, add);
+	}
+
+	// The dependency links to its next before it is reachable
+	private void insertBefore(Generic add, Generic next) {
+		Generic previous = map.get(next);
+		setNext(add, next);
+		Generic result = map.put(add, previous != next ? previous : add);
 		assert result == null : result.info();
+		map.put(next, add);
+		if (previous == next)
+			head = add;
+		else
+			setNext(previous, add);
+	}
+
+	boolean isEmpty() {
+		return head == null;
 	}
 
+	// The next link of the removed dependency is kept : an iteration positioned on it goes on
 	public boolean remove(Generic generic) {
 		assert generic != null : "generic is null";
-		assert head != null : "head is null";
-
-		Generic currentNode = head;
-
-		Generic currentContent = currentNode;
-		if (generic.equals(currentContent)) {
-			Generic next = currentNode.getNextDependency(getAncestor());
-			head = next != null ? next : null;
-			return true;
-		}
+		ConcurrentHashMap<Generic, Generic> map = this.map;
+		Generic previous = map != null ? map.remove(generic) : null;
+		if (previous == null)
+			return false;
+		Generic next = getNext(generic);
+		if (previous == generic) {
+			head = next;
+			previous = null;
+		} else
+			setNext(previous, next);
+		if (next == null)
+			tail = previous;
+		else
+			map.put(next, previous != null ? previous : next);
+		return true;
+	}
 
-		Generic nextNode = currentNode.getNextDependency(getAncestor());
-		while (nextNode != null) {
-			Generic nextGeneric = nextNode;
-			Generic nextNextNode = nextNode.getNextDependency(getAncestor());
-			if (generic.equals(nextGeneric)) {
-				if (nextNextNode == null)
-					tail = currentNode;
-				currentNode.getRoot().setNextDependency(currentNode, getAncestor(), nextNextNode);
-				map.remove(generic);
-				return true;
+	// All the linked dependencies, alive or not
+	Stream<Generic> linkedStream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new AbstractAwareIterator<Generic>() {
+			@Override
+			protected void advance() {
+				next = (next == null) ? head : getNext(next);
 			}
-			currentNode = nextNode;
-			nextNode = nextNextNode;
-		}
-		return false;
+		}, 0), false);
 	}
 
 	public Iterator<Generic> iterator(long ts) {
@@ -97,12 +187,12 @@ public abstract class Dependencies {
 		@Override
 		protected void advance() {
 			for (;;) {
-				Generic nextDependency = (next == null) ? head : next.getNextDependency(getAncestor());
+				Generic nextDependency = (next == null) ? head : getNext(next);
 				if (nextDependency == null) {
 					LifeManager lifeManager = getLifeManager();
 					lifeManager.readLock();
 					try {
-						nextDependency = (next == null) ? head : next.getNextDependency(getAncestor());
+						nextDependency = (next == null) ? head : getNext(next);
 						if (nextDependency == null) {
 							next = null;
 							lifeManager.atomicAdjustLastReadTs(ts);
@@ -118,4 +208,20 @@ public abstract class Dependencies {
 			}
 		}
 	}
+
+	private class UntrackedIterator extends AbstractAwareIterator<Generic> {
+
+		private final long ts;
+
+		private UntrackedIterator(long iterationTs) {
+			ts = iterationTs;
+		}
+
+		@Override
+		protected void advance() {
+			do {
+				next = (next == null) ? head : getNext(next);
+			} while (next != null && !next.getLifeManager().isAliveUntracked(ts));
+		}
+	}
 }
@@ -1,5 +1,8 @@
 package org.genericsystem.kernel;
 
+import java.io.Serializable;
+import java.util.List;
+
 import org.genericsystem.defaults.DefaultVertex;
 
 public interface Generic extends DefaultVertex<Generic>, Comparable<Generic> {
@@ -28,23 +31,60 @@ public interface Generic extends DefaultVertex<Generic>, Comparable<Generic> {
 		return getLifeManager().isSystem();
 	}
 
-	default Generic getNextDependency(Generic ancestor) {
-		return getRoot().getNextDependency(this, ancestor);
-	}
-
 	public static class GenericImpl implements Generic {
 		private Root root;
+		// Direct reference : the accessors do not look the vertex up in the root
+		private Vertex vertex;
 
 		Generic initRoot(Root root) {
 			this.root = root;
 			return this;
 		}
 
+		Generic init(Root root, Vertex vertex) {
+			this.vertex = vertex;
+			return initRoot(root);
+		}
+
+		Vertex getVertex() {
+			return vertex;
+		}
+
 		@Override
 		public Root getRoot() {
 			return root;
 		}
 
+		@Override
+		public long getTs() {
+			return vertex.getTs();
+		}
+
+		@Override
+		public Generic getMeta() {
+			return vertex.getMeta();
+		}
+
+		@Override
+		public List<Generic> getSupers() {
+			return vertex.getSupers();
+		}
+
+		@Override
+		public Serializable getValue() {
+			return vertex.getValue();
+		}
+
+		@Override
+		public List<Generic> getComponents() {
+			return vertex.getComponents();
+		}
+
+		@Override
+		public LifeManager getLifeManager() {
+			return vertex.getLifeManager();
+		}
+
 		@Override
 		public String toString() {
 			return defaultToString();
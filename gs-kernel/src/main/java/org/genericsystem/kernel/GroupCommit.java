@@ -0,0 +1,195 @@
+package org.genericsystem.kernel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
+import org.genericsystem.api.core.exceptions.OptimisticLockConstraintViolationException;
+
+/**
+ * Applies the changes of one or several transactions in one critical section : the generics touched by all the transactions are write locked once, the transactions are checked and applied in ts order, then the journal is synced
+ * once.
+ *
+ * The failures are isolated : a transaction that fails its MVCC checks is not applied and the others are. A transaction that fails while it is applied or journaled is undone before the next one is applied : its adds are
+ * unplugged and its removes are resurrected, nothing of it is journaled. Only a lock not acquired within Statics.LOCK_TIMEOUT makes all the transactions fail.
+ *
+ * Non overlapping group commits run in parallel : the locks are taken in ts order, which avoids the deadlocks.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class GroupCommit {
+
+	private final Root root;
+	private final List<Commit> commits = new ArrayList<>();
+	// The ts of a generic never changes and is unique, unlike its birthTs
+	private final NavigableMap<Long, Generic> generics = new TreeMap<>();
+	private final List<LifeManager> lockedLifeManagers = new ArrayList<>();
+
+	public GroupCommit(Root root) {
+		this.root = root;
+	}
+
+	public class Commit {
+
+		private final Transaction transaction;
+		private final Iterable<Generic> removes;
+		private final Iterable<Generic> adds;
+		private final Set<Generic> checkedGenerics = new LinkedHashSet<>();
+		private Exception failure;
+
+		private Commit(Transaction transaction, Iterable<Generic> removes, Iterable<Generic> adds) {
+			this.transaction = transaction;
+			this.removes = removes;
+			this.adds = adds;
+			for (Generic remove : removes)
+				prepareRemove(remove);
+			for (Generic add : adds)
+				prepareAdd(add);
+		}
+
+		// The ancestors are locked too because their dependencies are modified, but they are not checked : a remove does not conflict with their reads
+		private void prepareRemove(Generic remove) {
+			prepare(remove, true);
+			if (!remove.isMeta())
+				prepare(remove.getMeta(), false);
+			for (Generic superT : remove.getSupers())
+				prepare(superT, false);
+			for (Generic component : remove.getComponents())
+				prepare(component, false);
+		}
+
+		private void prepareAdd(Generic add) {
+			prepare(add.getMeta(), true);
+			for (Generic superT : add.getSupers())
+				prepare(superT, true);
+			for (Generic component : add.getComponents())
+				prepare(component, true);
+			prepare(add, true);
+		}
+
+		private void prepare(Generic generic, boolean checkMvcc) {
+			if (generic != null) {
+				generics.put(generic.getTs(), generic);
+				if (checkMvcc)
+					checkedGenerics.add(generic);
+			}
+		}
+
+		private void checkMvcc() throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
+			for (Generic generic : checkedGenerics)
+				try {
+					generic.getLifeManager().checkMvcc(transaction.getTs());
+				} catch (ConcurrencyControlException e) {
+					throw conflict(generic, e);
+				}
+		}
+
+		private long apply() throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
+			checkMvcc();
+			List<Generic> unplugged = new ArrayList<>();
+			List<Generic> plugged = new ArrayList<>();
+			transaction.setGrouped(true);
+			try {
+				for (Generic generic : removes) {
+					unplugged.add(generic);
+					transaction.unplug(generic);
+				}
+				for (Generic generic : adds) {
+					plugged.add(generic);
+					transaction.plug(generic);
+				}
+				return root.journal(transaction.getTs(), removes, adds);
+			} catch (RuntimeException e) {
+				undo(unplugged, plugged);
+				throw e;
+			} finally {
+				transaction.setGrouped(false);
+			}
+		}
+
+		// The generic that has failed is undone too, whatever the step it has reached
+		private void undo(List<Generic> unplugged, List<Generic> plugged) {
+			for (int i = plugged.size() - 1; i >= 0; i--) {
+				root.unindex(plugged.get(i));
+				plugged.get(i).getLifeManager().cancelBeginLife();
+			}
+			for (int i = unplugged.size() - 1; i >= 0; i--)
+				transaction.cancelUnplug(unplugged.get(i));
+		}
+
+		/**
+		 * @return the exception that has prevented the commit, null if it has been applied.
+		 */
+		public Exception getFailure() {
+			return failure;
+		}
+
+		/**
+		 * Throws the exception that has prevented the commit, if any.
+		 */
+		public void rethrow() throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
+			if (failure instanceof OptimisticLockConstraintViolationException)
+				throw (OptimisticLockConstraintViolationException) failure;
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+		}
+	}
+
+	public Commit add(Transaction transaction, Iterable<Generic> removes, Iterable<Generic> adds) {
+		Commit commit = new Commit(transaction, removes, adds);
+		commits.add(commit);
+		return commit;
+	}
+
+	public void apply() {
+		long lsn = Archiver.NO_LSN;
+		try {
+			try {
+				writeLockAll();
+			} catch (ConcurrencyControlException e) {
+				for (Commit commit : commits)
+					commit.failure = e;
+				return;
+			}
+			commits.sort(Comparator.comparingLong(commit -> commit.transaction.getTs()));
+			for (Commit commit : commits)
+				try {
+					lsn = Math.max(lsn, commit.apply());
+				} catch (OptimisticLockConstraintViolationException | RuntimeException e) {
+					commit.failure = e;
+				}
+		} finally {
+			writeUnlockAll();
+		}
+		root.syncJournal(lsn);
+	}
+
+	private void writeLockAll() throws ConcurrencyControlException {
+		for (Generic generic : generics.values()) {
+			LifeManager manager = generic.getLifeManager();
+			try {
+				manager.writeLock(Statics.LOCK_TIMEOUT);
+			} catch (ConcurrencyControlException e) {
+				throw conflict(generic, e);
+			}
+			lockedLifeManagers.add(manager);
+		}
+	}
+
+	private ConcurrencyControlException conflict(Generic generic, ConcurrencyControlException e) {
+		root.getConcurrencyMetrics().onConflict(generic);
+		return new ConcurrencyControlException("Conflict on " + generic.info() + " : " + e.getMessage());
+	}
+
+	private void writeUnlockAll() {
+		for (LifeManager lifeManager : lockedLifeManagers)
+			lifeManager.writeUnlock();
+		lockedLifeManagers.clear();
+	}
+}
@@ -0,0 +1,111 @@
+package org.genericsystem.kernel;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only file of the commits applied since a snapshot. Each record is framed as [length][payload][crc32].
+ *
+ * Records are written by the committing threads while they still hold their locks, so the file order is the commit order. Forcing the file to disk is done outside of these locks : the first thread waiting for a position flushes all the
+ * records appended before it (group commit).
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+class Journal {
+
+	static final Logger log = LoggerFactory.getLogger(Journal.class);
+
+	private final FileChannel channel;
+	private final long startLsn;
+	private long writtenLsn;
+	private volatile long durableLsn;
+	private final Object syncLock = new Object();
+
+	Journal(File file, long startLsn) throws IOException {
+		this.channel = new RandomAccessFile(file, "rw").getChannel();
+		this.channel.position(channel.size());
+		this.startLsn = startLsn;
+		this.writtenLsn = startLsn + channel.size();
+		this.durableLsn = writtenLsn;
+	}
+
+	synchronized long append(byte[] record) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		ByteBuffer buffer = ByteBuffer.allocate(record.length + 8);
+		buffer.putInt(record.length).put(record).putInt((int) crc.getValue());
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		writtenLsn += buffer.limit();
+		return writtenLsn;
+	}
+
+	synchronized long getWrittenLsn() {
+		return writtenLsn;
+	}
+
+	void sync(long lsn) throws IOException {
+		if (lsn <= startLsn || lsn <= durableLsn)
+			return;
+		synchronized (syncLock) {
+			if (lsn <= durableLsn)
+				return;
+			long target = getWrittenLsn();
+			channel.force(false);
+			durableLsn = target;
+		}
+	}
+
+	void close() throws IOException {
+		synchronized (syncLock) {
+			synchronized (this) {
+				if (!channel.isOpen())
+					return;
+				channel.force(false);
+				durableLsn = writtenLsn;
+				channel.close();
+			}
+		}
+	}
+
+	@FunctionalInterface
+	interface RecordConsumer {
+		void accept(byte[] record) throws IOException, ClassNotFoundException;
+	}
+
+	static void read(File file, RecordConsumer consumer) throws IOException, ClassNotFoundException {
+		try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+			for (;;) {
+				byte[] record;
+				try {
+					int length = input.readInt();
+					if (length < 0 || length > file.length())
+						throw new EOFException();
+					record = new byte[length];
+					input.readFully(record);
+					CRC32 crc = new CRC32();
+					crc.update(record);
+					if (input.readInt() != (int) crc.getValue()) {
+						log.warn("Corrupted record in journal : " + file.getName() + ", ignoring the end of the file");
+						return;
+					}
+				} catch (EOFException e) {
+					return;
+				}
+				consumer.accept(record);
+			}
+		}
+	}
+}
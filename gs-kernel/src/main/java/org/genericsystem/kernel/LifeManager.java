@@ -1,5 +1,6 @@
 package org.genericsystem.kernel;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -17,10 +18,12 @@ public class LifeManager {
 
 	protected static Logger log = LoggerFactory.getLogger(LifeManager.class);
 
-	private long birthTs;
+	private volatile long birthTs;
 	private final AtomicLong lastReadTs;
-	private long deathTs;
+	private volatile long deathTs;
 	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	// Odd while write locked : a seqlock over birthTs and deathTs for the readers
+	private volatile long version;
 
 	LifeManager(long[] otherTs) {
 		this.birthTs = otherTs[0];
@@ -47,24 +50,36 @@ public class LifeManager {
 		birthTs = Long.MAX_VALUE;
 	}
 
+	// The read is published in lastReadTs before the version is read : a writer either fails its checkMvcc or is seen by the reader, which then waits for it
 	public boolean isAlive(long contextTs) {
 		if (contextTs < birthTs)
 			return false;
+		atomicAdjustLastReadTs(contextTs);
+		long stamp = version;
+		if ((stamp & 1L) == 0L) {
+			boolean alive = contextTs >= birthTs && contextTs < deathTs;
+			if (version == stamp)
+				return alive;
+		}
 		readLock();
 		try {
-			atomicAdjustLastReadTs(contextTs);
 			return contextTs >= birthTs && contextTs < deathTs;
 		} finally {
 			readUnlock();
 		}
 	}
 
+	// Read without lock nor lastReadTs adjustment : only for readers that never commit
+	boolean isAliveUntracked(long contextTs) {
+		return contextTs >= birthTs && contextTs < deathTs;
+	}
+
 	public void checkMvcc(long contextTs) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
 		if (deathTs != Long.MAX_VALUE)
 			throw new OptimisticLockConstraintViolationException("Attempt to kill a generic that is already killed by another thread");
 		assert isWriteLockedByCurrentThread();
 		if (contextTs < lastReadTs.get())
-			throw new ConcurrencyControlException("" + contextTs + " " + lastReadTs.get());
+			throw new ConcurrencyControlException("Transaction ts " + contextTs + " is older than the last read ts " + lastReadTs.get());
 	}
 
 	public void kill(long contextTs) {
@@ -72,11 +87,15 @@ public class LifeManager {
 		assert birthTs != 0L;
 		assert contextTs >= birthTs : "Can not kill a generic that is not yet born";
 		assert deathTs == Long.MAX_VALUE : "Can not kill a generic that will die in the future";
-		assert contextTs >= getLastReadTs() : "Mvcc rule violation";
+		// No check of lastReadTs : a lock free reader may have raised it since checkMvcc, it will see the death
 		atomicAdjustLastReadTs(contextTs);
 		deathTs = contextTs;
 	}
 
+	void restoreDeathTs(long deathTs) {
+		this.deathTs = deathTs;
+	}
+
 	void resurect() {
 		assert isWriteLockedByCurrentThread();
 		deathTs = Long.MAX_VALUE;
@@ -90,22 +109,39 @@ public class LifeManager {
 		return deathTs;
 	}
 
+	// Only raises lastReadTs, without any write when it is already high enough
 	public void atomicAdjustLastReadTs(long contextTs) {
-		long current = lastReadTs.get();
-		if (contextTs <= current)
-			return;
-		for (;;) {
-			current = lastReadTs.get();
+		long current;
+		while (contextTs > (current = lastReadTs.get()))
 			if (lastReadTs.compareAndSet(current, contextTs))
-				break;
-		}
+				return;
 	}
 
 	public void writeLock() {
 		lock.writeLock().lock();
+		beginWrite();
+	}
+
+	// A commit that waits too long gives up, the cache retries it later
+	public void writeLock(long timeout) throws ConcurrencyControlException {
+		try {
+			if (!lock.writeLock().tryLock(timeout, TimeUnit.MILLISECONDS))
+				throw new ConcurrencyControlException("Unable to lock a generic within " + timeout + " ms");
+			beginWrite();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConcurrencyControlException("Interrupted while locking a generic");
+		}
+	}
+
+	private void beginWrite() {
+		if (lock.getWriteHoldCount() == 1)
+			version++;
 	}
 
 	public void writeUnlock() {
+		if (lock.getWriteHoldCount() == 1)
+			version++;
 		lock.writeLock().unlock();
 	}
 
@@ -0,0 +1,261 @@
+package org.genericsystem.kernel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * Block-based LZ codec in pure Java. The raw bytes are cut in blocks of BLOCK_SIZE bytes, each block is written as [raw length][compressed length][bytes] and the stream ends with an empty block. A block that does not compress is
+ * stored with a compressed length of 0.
+ *
+ * A compressed block is a list of sequences : [token][literals length][literals][offset][match length]. The high 4 bits of the token are the literals length and the low 4 bits the match length minus MIN_MATCH, a value of 15 being
+ * followed by bytes to add to it until a byte lower than 255. The offset is the distance of the match on 2 bytes. The last sequence of a block has only literals.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+class LzCodec implements Codec {
+
+	static final int BLOCK_SIZE = 1 << 16;
+
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_OFFSET = 0xFFFF;
+	private static final int HASH_LOG = 14;
+
+	@Override
+	public byte getId() {
+		return LZ_ID;
+	}
+
+	@Override
+	public OutputStream compress(OutputStream outputStream) {
+		return new LzOutputStream(outputStream);
+	}
+
+	@Override
+	public InputStream decompress(InputStream inputStream) {
+		return new LzInputStream(inputStream);
+	}
+
+	static int maxCompressedLength(int length) {
+		return length + length / 255 + 16;
+	}
+
+	static int compress(byte[] src, int length, byte[] dst, int[] table) {
+		Arrays.fill(table, 0);
+		int anchor = 0;
+		int dp = 0;
+		int i = 0;
+		while (i + MIN_MATCH <= length) {
+			int sequence = readInt(src, i);
+			int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+			int ref = table[hash] - 1;
+			table[hash] = i + 1;
+			if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+				i++;
+				continue;
+			}
+			int matchLength = MIN_MATCH;
+			while (i + matchLength < length && src[ref + matchLength] == src[i + matchLength])
+				matchLength++;
+			int token = dp;
+			dp = writeSequence(src, anchor, i - anchor, dst, dp);
+			dst[token] |= Math.min(matchLength - MIN_MATCH, 15);
+			dst[dp++] = (byte) (i - ref);
+			dst[dp++] = (byte) ((i - ref) >>> 8);
+			if (matchLength - MIN_MATCH >= 15)
+				dp = writeLength(dst, dp, matchLength - MIN_MATCH - 15);
+			i += matchLength;
+			anchor = i;
+		}
+		return writeSequence(src, anchor, length - anchor, dst, dp);
+	}
+
+	private static int readInt(byte[] bytes, int i) {
+		return (bytes[i] & 0xFF) | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF) << 16 | (bytes[i + 3] & 0xFF) << 24;
+	}
+
+	private static int writeLength(byte[] dst, int dp, int length) {
+		for (; length >= 255; length -= 255)
+			dst[dp++] = (byte) 255;
+		dst[dp++] = (byte) length;
+		return dp;
+	}
+
+	private static int writeSequence(byte[] src, int from, int literalsLength, byte[] dst, int dp) {
+		dst[dp++] = (byte) (Math.min(literalsLength, 15) << 4);
+		if (literalsLength >= 15)
+			dp = writeLength(dst, dp, literalsLength - 15);
+		System.arraycopy(src, from, dst, dp, literalsLength);
+		return dp + literalsLength;
+	}
+
+	static void decompress(byte[] src, int length, byte[] dst, int rawLength) throws StreamCorruptedException {
+		int sp = 0;
+		int dp = 0;
+		try {
+			for (;;) {
+				int token = src[sp++] & 0xFF;
+				int literalsLength = token >>> 4;
+				if (literalsLength == 15)
+					for (int b = 255; b == 255; literalsLength += b)
+						b = src[sp++] & 0xFF;
+				System.arraycopy(src, sp, dst, dp, literalsLength);
+				sp += literalsLength;
+				dp += literalsLength;
+				if (sp == length)
+					break;
+				int offset = (src[sp++] & 0xFF) | (src[sp++] & 0xFF) << 8;
+				int matchLength = token & 0x0F;
+				if (matchLength == 15)
+					for (int b = 255; b == 255; matchLength += b)
+						b = src[sp++] & 0xFF;
+				matchLength += MIN_MATCH;
+				if (offset == 0 || offset > dp || dp + matchLength > rawLength)
+					throw new StreamCorruptedException("Corrupted LZ block");
+				for (int ref = dp - offset, end = dp + matchLength; dp < end;)
+					dst[dp++] = dst[ref++];
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new StreamCorruptedException("Corrupted LZ block");
+		}
+		if (dp != rawLength)
+			throw new StreamCorruptedException("Corrupted LZ block");
+	}
+
+	private static class LzOutputStream extends OutputStream {
+
+		private final DataOutputStream output;
+		private final byte[] buffer = new byte[BLOCK_SIZE];
+		private final byte[] compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+		private final int[] table = new int[1 << HASH_LOG];
+		private int position;
+		private boolean closed;
+
+		private LzOutputStream(OutputStream outputStream) {
+			this.output = new DataOutputStream(outputStream);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (position == BLOCK_SIZE)
+				writeBlock();
+			buffer[position++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			while (length > 0) {
+				if (position == BLOCK_SIZE)
+					writeBlock();
+				int count = Math.min(length, BLOCK_SIZE - position);
+				System.arraycopy(bytes, offset, buffer, position, count);
+				position += count;
+				offset += count;
+				length -= count;
+			}
+		}
+
+		private void writeBlock() throws IOException {
+			if (position == 0)
+				return;
+			int compressedLength = LzCodec.compress(buffer, position, compressed, table);
+			output.writeInt(position);
+			if (compressedLength < position) {
+				output.writeInt(compressedLength);
+				output.write(compressed, 0, compressedLength);
+			} else {
+				output.writeInt(0);
+				output.write(buffer, 0, position);
+			}
+			position = 0;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			writeBlock();
+			output.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed)
+				return;
+			closed = true;
+			writeBlock();
+			output.writeInt(0);
+			output.close();
+		}
+	}
+
+	private static class LzInputStream extends InputStream {
+
+		private final DataInputStream input;
+		private final byte[] buffer = new byte[BLOCK_SIZE];
+		private byte[] compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+		private int position;
+		private int limit;
+		private boolean ended;
+
+		private LzInputStream(InputStream inputStream) {
+			this.input = new DataInputStream(inputStream);
+		}
+
+		private boolean readBlock() throws IOException {
+			if (ended)
+				return false;
+			int rawLength = input.readInt();
+			if (rawLength == 0) {
+				ended = true;
+				return false;
+			}
+			if (rawLength < 0 || rawLength > BLOCK_SIZE)
+				throw new StreamCorruptedException("Corrupted LZ block length : " + rawLength);
+			int compressedLength = input.readInt();
+			if (compressedLength == 0)
+				input.readFully(buffer, 0, rawLength);
+			else {
+				if (compressedLength < 0 || compressedLength > compressed.length)
+					throw new StreamCorruptedException("Corrupted LZ block length : " + compressedLength);
+				input.readFully(compressed, 0, compressedLength);
+				decompress(compressed, compressedLength, buffer, rawLength);
+			}
+			position = 0;
+			limit = rawLength;
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (position == limit && !readBlock())
+				return -1;
+			return buffer[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0)
+				return 0;
+			if (position == limit && !readBlock())
+				return -1;
+			int count = Math.min(length, limit - position);
+			System.arraycopy(buffer, position, bytes, offset, count);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return limit - position;
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+	}
+}
@@ -1,14 +1,28 @@
 package org.genericsystem.kernel;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.genericsystem.api.core.annotations.InstanceClass;
+import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
 import org.genericsystem.defaults.DefaultConfig.MetaAttribute;
 import org.genericsystem.defaults.DefaultConfig.MetaRelation;
 import org.genericsystem.defaults.DefaultConfig.Sequence;
@@ -22,7 +36,10 @@ public class Root extends GenericImpl implements DefaultRoot<Generic> {
 	protected Wrapper contextWrapper = buildContextWrapper();
 	private final SystemCache systemCache;
 	private final Archiver archiver;
-	private final Map<Generic, Vertex> map = new ConcurrentHashMap<>();
+	// The generics reach their vertex directly : only the system generics are kept, the archiver writes them apart. The other generics are reachable from their ancestors until the garbage collector unlinks them
+	private final Set<Generic> systemGenerics = ConcurrentHashMap.newKeySet();
+	private final ConcurrencyMetrics concurrencyMetrics = new ConcurrencyMetrics();
+	private final ActiveContexts activeContexts = new ActiveContexts();
 
 	private boolean initialized = false;
 
@@ -40,12 +57,31 @@ public class Root extends GenericImpl implements DefaultRoot<Generic> {
 	}
 
 	public Root(Serializable value, String persistentDirectoryPath, Class<?>... userClasses) {
+		this(value, persistentDirectoryPath, new ArchiverPolicy(), userClasses);
+	}
+
+	public Root(Serializable value, String persistentDirectoryPath, ArchiverPolicy archiverPolicy, Class<?>... userClasses) {
+		this(root -> new Archiver(root, persistentDirectoryPath, archiverPolicy), value, userClasses);
+	}
+
+	/**
+	 * Opens a read-only root on the state of the persistent directory at ts, see {@link Archiver#Archiver(Root, String, ArchiverPolicy, long)}.
+	 */
+	public Root(Serializable value, String persistentDirectoryPath, long ts, Class<?>... userClasses) {
+		this(value, persistentDirectoryPath, new ArchiverPolicy(), ts, userClasses);
+	}
+
+	public Root(Serializable value, String persistentDirectoryPath, ArchiverPolicy archiverPolicy, long ts, Class<?>... userClasses) {
+		this(root -> new Archiver(root, persistentDirectoryPath, archiverPolicy, ts), value, userClasses);
+	}
+
+	private Root(Function<Root, Archiver> archiverBuilder, Serializable value, Class<?>... userClasses) {
 		init(this, LifeManager.TS_SYSTEM, null, Collections.emptyList(), value, Collections.emptyList(), LifeManager.SYSTEM_TS);
 		contextWrapper.set(newCache());
 		systemCache = new SystemCache(this, getClass());
 		systemCache.mount(Arrays.asList(MetaAttribute.class, MetaRelation.class, SystemMap.class, Sequence.class), userClasses);
 		flushContext();
-		archiver = new Archiver(this, persistentDirectoryPath);
+		archiver = archiverBuilder.apply(this);
 		initialized = true;
 		// shiftContext();
 	}
@@ -85,6 +121,14 @@ public class Root extends GenericImpl implements DefaultRoot<Generic> {
 		// //Autoflush
 	}
 
+	public ActiveContexts getActiveContexts() {
+		return activeContexts;
+	}
+
+	public ConcurrencyMetrics getConcurrencyMetrics() {
+		return concurrencyMetrics;
+	}
+
 	public long pickNewTs() {
 		return generator.pickNewTs();
 	}
@@ -93,6 +137,10 @@ public class Root extends GenericImpl implements DefaultRoot<Generic> {
 		return initialized;
 	}
 
+	public boolean isReadOnly() {
+		return archiver != null && archiver.isReadOnly();
+	}
+
 	@Override
 	public Context getCurrentCache() {
 		return contextWrapper.get();
@@ -120,20 +168,39 @@ public class Root extends GenericImpl implements DefaultRoot<Generic> {
 		archiver.close();
 	}
 
+	// Takes a snapshot or a delta now on the calling thread, without waiting for the policy of the archiver
+	public void snapshot() {
+		if (archiver != null)
+			archiver.snapshot();
+	}
+
+	// Bulk migration in newline-delimited JSON, see Archiver.Exporter
+	public void exportGraph(OutputStream outputStream) throws IOException {
+		// The generics alive at the ts of the export must not be collected before they are written
+		Object export = new Object();
+		activeContexts.register(export, pickNewTs());
+		try {
+			archiver.getExporter(pickNewTs()).export(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		} finally {
+			activeContexts.unregister(export);
+		}
+	}
+
+	// See Archiver.Importer
+	public void importGraph(InputStream inputStream) throws IOException, ClassNotFoundException {
+		if (isReadOnly())
+			throw new UnsupportedOperationException("Read only root");
+		archiver.getImporter().importGraph(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+	}
+
+	// The ts are the wall-clock in nanoseconds, pushed forward by one when several ts are picked in the same nanosecond : one atomic update, no spin
 	public static class TsGenerator {
 		private final long startTime = System.currentTimeMillis() * Statics.MILLI_TO_NANOSECONDS - System.nanoTime();
 		private final AtomicLong lastTime = new AtomicLong(0L);
 
 		public long pickNewTs() {
-			long nanoTs;
-			long current;
-			for (;;) {
-				nanoTs = startTime + System.nanoTime();
-				current = lastTime.get();
-				if (nanoTs - current > 0)
-					if (lastTime.compareAndSet(current, nanoTs))
-						return nanoTs;
-			}
+			long nanoTs = startTime + System.nanoTime();
+			return lastTime.accumulateAndGet(nanoTs, (current, next) -> next > current ? next : current + 1);
 		}
 	}
 
@@ -142,7 +209,7 @@ public class Root extends GenericImpl implements DefaultRoot<Generic> {
 	}
 
 	private Vertex getVertex(Generic generic) {
-		return map.get(generic);
+		return ((GenericImpl) generic).getVertex();
 	}
 
 	@Override
@@ -170,33 +237,153 @@ public class Root extends GenericImpl implements DefaultRoot<Generic> {
 		return getVertex(generic).getComponents();
 	}
 
-	Dependencies getDependencies(Generic generic) {
-		return getVertex(generic).getDependencies();
+	Dependencies getInstances(Generic generic) {
+		return getVertex(generic).getInstances();
 	}
 
-	Generic getNextDependency(Generic generic, Generic ancestor) {
-		return getVertex(generic).getNextDependency(ancestor);
+	Dependencies getInheritings(Generic generic) {
+		return getVertex(generic).getInheritings();
 	}
 
-	void setNextDependency(Generic generic, Generic ancestor, Generic nextDependency) {
-		getVertex(generic).setNextDependency(ancestor, nextDependency);
+	Dependencies getComposites(Generic generic) {
+		return getVertex(generic).getComposites();
+	}
+
+	ValueIndexMap getValueIndex(Generic meta) {
+		return getVertex(meta).getValueIndex();
+	}
+
+	public boolean isValueIndexEnabled(Generic meta) {
+		return getValueIndex(meta) != null;
+	}
+
+	/**
+	 * Indexes the instances of meta by value, the existing ones included, so that getInstance(value) does not scan all of them. The index is not persistent : a system generic is indexed again at each start by its
+	 * {@link org.genericsystem.api.core.annotations.ValueIndex} annotation.
+	 */
+	public void enableValueIndex(Generic meta) {
+		LifeManager lifeManager = meta.getLifeManager();
+		lifeManager.writeLock();
+		try {
+			if (isValueIndexEnabled(meta))
+				return;
+			ValueIndexMap valueIndex = new ValueIndexMap(meta);
+			getInstances(meta).linkedStream().forEach(valueIndex::add);
+			getVertex(meta).setValueIndex(valueIndex);
+		} finally {
+			lifeManager.writeUnlock();
+		}
+	}
+
+	Generic getNextDependency(Generic generic, int index) {
+		return getVertex(generic).getNextDependency(index);
+	}
+
+	void setNextDependency(Generic generic, int index, Generic nextDependency) {
+		getVertex(generic).setNextDependency(index, nextDependency);
+	}
+
+	// The generic is linked in the instances of its meta, the inheritings of its supers and the composites of its components
+	void index(Generic generic) {
+		if (!generic.isMeta()) {
+			getVertex(generic.getMeta()).buildInstances().add(generic);
+			ValueIndexMap valueIndex = getValueIndex(generic.getMeta());
+			if (valueIndex != null)
+				valueIndex.add(generic);
+		}
+		generic.getSupers().forEach(superT -> getVertex(superT).buildInheritings().add(generic));
+		generic.getComponents().stream().distinct().forEach(component -> getVertex(component).buildComposites().add(generic));
+	}
+
+	void unindex(Generic generic) {
+		if (!generic.isMeta()) {
+			getInstances(generic.getMeta()).remove(generic);
+			ValueIndexMap valueIndex = getValueIndex(generic.getMeta());
+			if (valueIndex != null)
+				valueIndex.remove(generic);
+		}
+		generic.getSupers().forEach(superT -> getInheritings(superT).remove(generic));
+		generic.getComponents().stream().distinct().forEach(component -> getComposites(component).remove(generic));
 	}
 
 	LifeManager getLifeManager(Generic generic) {
 		return getVertex(generic).getLifeManager();
 	}
 
+	// Garbage collection of a dead generic : it is first unlinked from the dependencies of its ancestors, then forgotten once no context can be iterating on it
+	public boolean unlink(Generic generic) {
+		NavigableMap<Long, Generic> ancestors = new TreeMap<>();
+		if (!generic.isMeta())
+			ancestors.put(generic.getMeta().getTs(), generic.getMeta());
+		generic.getSupers().forEach(superT -> ancestors.put(superT.getTs(), superT));
+		generic.getComponents().forEach(component -> ancestors.put(component.getTs(), component));
+		List<LifeManager> locked = new ArrayList<>();
+		try {
+			for (Generic ancestor : ancestors.values()) {
+				LifeManager lifeManager = ancestor.getLifeManager();
+				lifeManager.writeLock(Statics.LOCK_TIMEOUT);
+				locked.add(lifeManager);
+			}
+			unindex(generic);
+			return true;
+		} catch (ConcurrencyControlException e) {
+			return false;
+		} finally {
+			locked.forEach(LifeManager::writeUnlock);
+		}
+	}
+
+	// The dependencies of a forgotten generic must be forgotten first
+	public boolean forget(Generic generic) {
+		if (!getInstances(generic).isEmpty() || !getInheritings(generic).isEmpty() || !getComposites(generic).isEmpty())
+			return false;
+		systemGenerics.remove(generic);
+		return true;
+	}
+
+	// The archiver still has to save the generic
+	public boolean hasPendingChange(Generic generic) {
+		return archiver != null && archiver.hasChange(generic);
+	}
+
+	// No generic but the system ones is linked to the system generics, alive or not
+	boolean holdsOnlySystemGenerics() {
+		return systemGenerics.stream().flatMap(generic -> Stream.of(getInstances(generic), getInheritings(generic), getComposites(generic))).flatMap(Dependencies::linkedStream).allMatch(Generic::isSystem);
+	}
+
+	NavigableSet<Generic> getSystemGenerics() {
+		return new TreeSet<>(systemGenerics);
+	}
+
+	long journal(long ts, Iterable<Generic> removes, Iterable<Generic> adds) {
+		return archiver != null ? archiver.journal(ts, removes, adds) : Archiver.NO_LSN;
+	}
+
+	void notifyChange(Generic generic) {
+		if (archiver != null)
+			archiver.addChange(generic);
+	}
+
+	void syncJournal(long lsn) {
+		if (archiver != null)
+			archiver.sync(lsn);
+	}
+
 	Generic init(long ts, Class<?> clazz, Generic meta, List<Generic> supers, Serializable value, List<Generic> components, long[] otherTs) {
 		return init(newT(clazz, meta), ts, meta, supers, value, components, otherTs);
 	}
 
-	private Generic init(Generic generic, long ts, Generic meta, List<Generic> supers, Serializable value, List<Generic> components, long[] otherTs) {
-		Vertex result = map.putIfAbsent(generic, new Vertex(generic, ts, meta, supers, value, components, otherTs));
-		assert result == null;
-		return ((GenericImpl) generic).initRoot(Root.this);
+	// archiver acces
+	Generic init(Generic generic, long ts, Generic meta, List<Generic> supers, Serializable value, List<Generic> components, long[] otherTs) {
+		Vertex vertex = new Vertex(generic, ts, meta, supers, value, components, otherTs);
+		if (vertex.getLifeManager().isSystem()) {
+			boolean result = systemGenerics.add(generic);
+			assert result;
+		}
+		return ((GenericImpl) generic).init(Root.this, vertex);
 	}
 
-	private Generic newT(Class<?> clazz, Generic meta) {
+	Generic newT(Class<?> clazz, Generic meta) {
 		InstanceClass metaAnnotation = meta == null ? null : getAnnotedClass(meta).getAnnotation(InstanceClass.class);
 		if (metaAnnotation != null)
 			if (clazz == null || clazz.isAssignableFrom(metaAnnotation.value()))
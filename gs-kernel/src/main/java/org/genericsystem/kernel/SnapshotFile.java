@@ -0,0 +1,208 @@
+package org.genericsystem.kernel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Container of a full snapshot : [magic][version][codec id] segments [index][record count][max ts][index offset][index crc][magic].
+ *
+ * The generics are written level by level in segments of at most SEGMENT_SIZE generics compressed by the {@link Codec} of the header, each segment being an independent {@link ArchiverOutputStream}. The index at the end of the
+ * file gives the level, the size, the position and the CRC32 of each segment so that the segments can be decoded in parallel from a mapping of the file.
+ *
+ * A torn or corrupted file is detected by {@link #read(File, Codec)} before any generic is loaded : the footer and the index are checked first, then the checksums of the segments in parallel.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+class SnapshotFile {
+
+	static final int MAGIC = 0x47535346;
+	static final byte VERSION = 3;
+	static final int SEGMENT_SIZE = 1 << 14;
+
+	private static final int HEADER_SIZE = 6;
+	private static final int FOOTER_SIZE = 32;
+	private static final int INDEX_ENTRY_SIZE = 21;
+
+	static class Segment {
+
+		private final int level;
+		private final int count;
+		private final long offset;
+		private final int length;
+		private final int crc;
+		private ByteBuffer buffer;
+		private Codec codec;
+		private long maxTs;
+
+		private Segment(int level, int count, long offset, int length, int crc) {
+			this.level = level;
+			this.count = count;
+			this.offset = offset;
+			this.length = length;
+			this.crc = crc;
+		}
+
+		int getLevel() {
+			return level;
+		}
+
+		int getCount() {
+			return count;
+		}
+
+		// The max ts of the whole snapshot
+		long getMaxTs() {
+			return maxTs;
+		}
+
+		private boolean isValid() {
+			return crc(buffer.duplicate()) == crc;
+		}
+
+		ArchiverInputStream getInputStream() throws IOException {
+			return new ArchiverInputStream(new BufferedInputStream(codec.decompress(new ByteBufferInputStream(buffer.duplicate())), 1 << 16));
+		}
+	}
+
+	static class Writer implements Closeable {
+
+		private final FileOutputStream fileOutputStream;
+		private final DataOutputStream output;
+		private final List<Segment> segments = new ArrayList<>();
+		private long position = HEADER_SIZE;
+		private long recordCount;
+		private long maxTs = Long.MIN_VALUE;
+
+		Writer(File file, Codec codec, long bytesPerSecond) throws IOException {
+			fileOutputStream = new FileOutputStream(file);
+			output = new DataOutputStream(new BufferedOutputStream(bytesPerSecond != Long.MAX_VALUE ? new ThrottledOutputStream(fileOutputStream, bytesPerSecond) : fileOutputStream, 1 << 16));
+			output.writeInt(MAGIC);
+			output.writeByte(VERSION);
+			output.writeByte(codec.getId());
+		}
+
+		void writeSegment(int level, int count, long segmentMaxTs, byte[] bytes) throws IOException {
+			output.write(bytes);
+			segments.add(new Segment(level, count, position, bytes.length, crc(ByteBuffer.wrap(bytes))));
+			position += bytes.length;
+			recordCount += count;
+			maxTs = Math.max(maxTs, segmentMaxTs);
+		}
+
+		// The snapshot must be on disk before the journals it replaces are deleted
+		@Override
+		public void close() throws IOException {
+			ByteBuffer index = ByteBuffer.allocate(4 + segments.size() * INDEX_ENTRY_SIZE);
+			index.putInt(segments.size());
+			for (Segment segment : segments)
+				index.put((byte) segment.level).putInt(segment.count).putLong(segment.offset).putInt(segment.length).putInt(segment.crc);
+			output.write(index.array());
+			output.writeLong(recordCount);
+			output.writeLong(maxTs);
+			output.writeLong(position);
+			output.writeInt(crc(ByteBuffer.wrap(index.array())));
+			output.writeInt(MAGIC);
+			output.flush();
+			fileOutputStream.getFD().sync();
+			output.close();
+		}
+	}
+
+	// CRC32C would be cheaper but needs Java 9, CRC32 is an intrinsic of the JVM too
+	private static int crc(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		if (buffer.hasArray())
+			crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		else {
+			byte[] bytes = new byte[Math.min(buffer.remaining(), 1 << 16)];
+			while (buffer.hasRemaining()) {
+				int length = Math.min(bytes.length, buffer.remaining());
+				buffer.get(bytes, 0, length);
+				crc.update(bytes, 0, length);
+			}
+		}
+		return (int) crc.getValue();
+	}
+
+	// The codec of the header is the configured one if they have the same id, a built-in one otherwise
+	static List<Segment> read(File file, Codec configured) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"); FileChannel channel = randomAccessFile.getChannel()) {
+			long size = channel.size();
+			if (size < HEADER_SIZE + FOOTER_SIZE + 4)
+				throw new StreamCorruptedException("Not a Generic System snapshot : " + file.getName());
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+			ByteBuffer footer = channel.map(MapMode.READ_ONLY, size - FOOTER_SIZE, FOOTER_SIZE);
+			if (header.getInt(0) != MAGIC || footer.getInt(28) != MAGIC)
+				throw new StreamCorruptedException("Not a Generic System snapshot : " + file.getName());
+			if (header.get(4) != VERSION)
+				throw new StreamCorruptedException("Unsupported snapshot version : " + header.get(4));
+			Codec codec = Codec.get(header.get(5), configured);
+			long recordCount = footer.getLong(0);
+			long indexOffset = footer.getLong(16);
+			if (indexOffset < HEADER_SIZE || indexOffset > size - FOOTER_SIZE - 4)
+				throw new StreamCorruptedException("Corrupted snapshot index : " + file.getName());
+			ByteBuffer index = channel.map(MapMode.READ_ONLY, indexOffset, size - FOOTER_SIZE - indexOffset);
+			if (crc(index.duplicate()) != footer.getInt(24))
+				throw new StreamCorruptedException("Corrupted snapshot index : " + file.getName());
+			int count = index.getInt();
+			if (count < 0 || count != index.remaining() / INDEX_ENTRY_SIZE)
+				throw new StreamCorruptedException("Corrupted snapshot index : " + file.getName());
+			List<Segment> segments = new ArrayList<>(count);
+			long segmentsRecordCount = 0L;
+			for (int i = 0; i < count; i++) {
+				Segment segment = new Segment(index.get(), index.getInt(), index.getLong(), index.getInt(), index.getInt());
+				if (segment.offset < HEADER_SIZE || segment.length < 0 || segment.offset + segment.length > indexOffset)
+					throw new StreamCorruptedException("Corrupted snapshot index : " + file.getName());
+				// Each segment is mapped on its own : a snapshot can be larger than the 2GB of a mapping
+				segment.buffer = channel.map(MapMode.READ_ONLY, segment.offset, segment.length);
+				segment.codec = codec;
+				segment.maxTs = footer.getLong(8);
+				segments.add(segment);
+				segmentsRecordCount += segment.count;
+			}
+			if (segmentsRecordCount != recordCount)
+				throw new StreamCorruptedException("Corrupted snapshot index : " + file.getName());
+			if (!segments.parallelStream().allMatch(Segment::isValid))
+				throw new StreamCorruptedException("Corrupted snapshot segment : " + file.getName());
+			return segments;
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer.hasRemaining())
+				return -1;
+			length = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, length);
+			return length;
+		}
+	}
+}
@@ -20,6 +20,7 @@ public class Statics {
 
 	public static final int ATTEMPT_SLEEP = 15;
 	public static final int ATTEMPTS = 50;
+	public static final long LOCK_TIMEOUT = 1000L;
 
 	public static final long GARBAGE_PERIOD = 1000L;
 	public static final long GARBAGE_INITIAL_DELAY = 1000L;
@@ -11,6 +11,7 @@ import org.genericsystem.api.core.IRoot;
 import org.genericsystem.api.core.annotations.Components;
 import org.genericsystem.api.core.annotations.Dependencies;
 import org.genericsystem.api.core.annotations.Meta;
+import org.genericsystem.api.core.annotations.ValueIndex;
 import org.genericsystem.api.core.annotations.constraints.InstanceValueClassConstraint;
 import org.genericsystem.api.core.annotations.constraints.InstanceValueGenerator;
 import org.genericsystem.api.core.annotations.constraints.NoReferentialIntegrityProperty;
@@ -105,6 +106,9 @@ public class SystemCache {
 		if (clazz.getAnnotation(UniqueValueConstraint.class) != null)
 			result.enableUniqueValueConstraint();
 
+		if (clazz.getAnnotation(ValueIndex.class) != null)
+			root.enableValueIndex(result);
+
 		if (clazz.getAnnotation(InstanceValueClassConstraint.class) != null)
 			result.setInstanceValueClassConstraint(clazz.getAnnotation(InstanceValueClassConstraint.class).value());
 
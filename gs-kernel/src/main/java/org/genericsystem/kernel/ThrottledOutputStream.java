@@ -0,0 +1,50 @@
+package org.genericsystem.kernel;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Limits the throughput of the background writings of the archiver so that they don't compete with the journal for the disk.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+class ThrottledOutputStream extends FilterOutputStream {
+
+	private static final long MIN_SLEEP = 1_000_000L;
+
+	private final long bytesPerSecond;
+	private final long start = System.nanoTime();
+	private long written;
+
+	ThrottledOutputStream(OutputStream out, long bytesPerSecond) {
+		super(out);
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		written++;
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		out.write(bytes, offset, length);
+		written += length;
+		throttle();
+	}
+
+	private void throttle() throws IOException {
+		long delay = (long) (written * 1_000_000_000d / bytesPerSecond) - (System.nanoTime() - start);
+		if (delay > MIN_SLEEP)
+			try {
+				Thread.sleep(delay / 1_000_000L, (int) (delay % 1_000_000L));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+	}
+}
@@ -1,7 +1,9 @@
 package org.genericsystem.kernel;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import org.genericsystem.api.core.Snapshot;
@@ -11,10 +13,24 @@ import org.genericsystem.api.core.exceptions.OptimisticLockConstraintViolationEx
 public class Transaction extends Context {
 
 	private final long ts;
+	// The changes applied by a group commit are journaled by it, the others one by one
+	private boolean grouped;
+	// The end of the last change journaled one by one, not synced yet
+	private long journaledLsn = Archiver.NO_LSN;
+	private final boolean readOnly;
 
 	protected Transaction(Root root, long ts) {
+		this(root, ts, false);
+	}
+
+	/**
+	 * A read-only transaction reads at its ts without adjusting the lastReadTs of the generics it reads : it never makes a concurrent commit fail with a ConcurrencyControlException, and it can't be applied. As its reads are not
+	 * tracked, they are not repeatable : a commit still in flight of a transaction older than its ts is seen once done.
+	 */
+	protected Transaction(Root root, long ts, boolean readOnly) {
 		super(root);
 		this.ts = ts;
+		this.readOnly = readOnly;
 	}
 
 	protected Transaction(Root root) {
@@ -27,119 +43,162 @@ public class Transaction extends Context {
 	}
 
 	public void apply(Iterable<Generic> removes, Iterable<Generic> adds) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
-		new LockedLifeManager().apply(removes, adds);
+		if (readOnly)
+			throw new UnsupportedOperationException("Read only transaction");
+		GroupCommit groupCommit = new GroupCommit(getRoot());
+		GroupCommit.Commit commit = groupCommit.add(this, removes, adds);
+		groupCommit.apply();
+		commit.rethrow();
 	}
 
 	@Override
 	protected final Generic plug(Generic generic) {
-		if (getRoot().isInitialized())
+		checkWritable();
+		if (getRoot().isInitialized()) {
 			generic.getLifeManager().beginLife(getTs());
-		Set<Generic> set = new HashSet<>();
-		if (!generic.isMeta())
-			set.add(generic.getMeta());
-		set.addAll(generic.getSupers());
-		set.addAll(generic.getComponents());
-		set.stream().forEach(ancestor -> getRoot().getDependencies(ancestor).add(generic));
+			getRoot().notifyChange(generic);
+		}
+		index(generic);
 		getChecker().checkAfterBuild(true, false, generic);
+		journal(Collections.emptyList(), Collections.singletonList(generic));
 		return generic;
 	}
 
+	void setGrouped(boolean grouped) {
+		this.grouped = grouped;
+	}
+
+	// A change applied directly is only written : the session pays one fsync for all of them on sync
+	private void journal(List<Generic> removes, List<Generic> adds) {
+		if (!grouped && getRoot().isInitialized())
+			journaledLsn = getRoot().journal(getTs(), removes, adds);
+	}
+
+	/**
+	 * Makes durable the changes applied directly by this transaction, outside a group commit. A group commit or the close of the root make them durable too.
+	 */
+	public void sync() {
+		getRoot().syncJournal(journaledLsn);
+	}
+
+	// archiver acces
+	void index(Generic generic) {
+		getRoot().index(generic);
+	}
+
 	@Override
 	protected void unplug(Generic generic) {
 		getChecker().checkAfterBuild(false, false, generic);
-		generic.getLifeManager().kill(getTs());
+		kill(generic);
 		// if (!result)
 		// discardWithException(new NotFoundException(generic.info()));
-		Set<Generic> set = new HashSet<>();
-		if (!generic.isMeta())
-			set.add(generic.getMeta());
-		set.addAll(generic.getSupers());
-		set.addAll(generic.getComponents());
-		set.stream().forEach(ancestor -> getRoot().getDependencies(ancestor).remove(generic));
+		unindex(generic);
 	}
 
-	@Override
-	public Snapshot<Generic> getDependencies(Generic generic) {
-		return new Snapshot<Generic>() {
+	// Undoes the unplug of a group commit that has failed : the generic takes back its place in the dependencies of its ancestors
+	protected void cancelUnplug(Generic generic) {
+		LifeManager lifeManager = generic.getLifeManager();
+		if (lifeManager.getDeathTs() == getTs())
+			lifeManager.resurect();
+		unindex(generic);
+		index(generic);
+	}
 
-			@Override
-			public Stream<Generic> stream() {
-				return getRoot().getDependencies(generic).stream(getTs());
-			}
+	// archiver acces
+	void unindex(Generic generic) {
+		getRoot().unindex(generic);
+	}
 
-			@Override
-			public Generic get(Object o) {
-				return getRoot().getDependencies(generic).get(o, getTs());
-			}
-		};
+	protected void kill(Generic generic) {
+		checkWritable();
+		generic.getLifeManager().kill(getTs());
+		getRoot().notifyChange(generic);
+		journal(Collections.singletonList(generic), Collections.emptyList());
+	}
+
+	private void checkWritable() {
+		if (getRoot().isReadOnly())
+			throw new UnsupportedOperationException("Read only root");
+	}
+
+	@Override
+	public Snapshot<Generic> getInstances(Generic generic) {
+		return snapshot(dependencies(generic, getRoot()::getInstances));
+	}
+
+	@Override
+	public Snapshot<Generic> getInheritings(Generic generic) {
+		return snapshot(dependencies(generic, getRoot()::getInheritings));
 	}
 
-	private class LockedLifeManager {
+	@Override
+	public Snapshot<Generic> getComposites(Generic generic) {
+		return snapshot(dependencies(generic, getRoot()::getComposites));
+	}
 
-		private Set<LifeManager> lockedLifeManagers = new HashSet<>();
+	@Override
+	public Snapshot<Generic> getInstances(Generic generic, Serializable value) {
+		ValueIndexMap valueIndex = getRoot().getValueIndex(generic);
+		return valueIndex != null ? snapshot(valueIndex, value) : super.getInstances(generic, value);
+	}
 
-		private void apply(Iterable<Generic> removes, Iterable<Generic> adds) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
+	// Until its first dependency of a kind, an ancestor shares Dependencies.EMPTY : the read of it is tracked on the ancestor, which a commit that adds to it holds write locked
+	protected Dependencies dependencies(Generic ancestor, Function<Generic, Dependencies> kind) {
+		Dependencies dependencies = kind.apply(ancestor);
+		if (dependencies == Dependencies.EMPTY && !readOnly) {
+			LifeManager lifeManager = ancestor.getLifeManager();
+			lifeManager.readLock();
 			try {
-				writeLockAllAndCheckMvcc(adds, removes);
-				for (Generic generic : removes)
-					unplug(generic);
-				for (Generic generic : adds)
-					plug(generic);
+				dependencies = kind.apply(ancestor);
+				if (dependencies == Dependencies.EMPTY)
+					lifeManager.atomicAdjustLastReadTs(getTs());
 			} finally {
-				writeUnlockAll();
+				lifeManager.readUnlock();
 			}
 		}
+		return dependencies;
+	}
 
-		private void applyAdd(Generic add) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
-			try {
-				writeLockAndCheckMvccForAdd(add);
-				plug(add);
-			} finally {
-				writeUnlockAll();
+	protected Snapshot<Generic> snapshot(Dependencies dependencies) {
+		if (readOnly)
+			return untrackedSnapshot(dependencies);
+		return new Snapshot<Generic>() {
+
+			@Override
+			public Stream<Generic> stream() {
+				return dependencies.stream(getTs());
 			}
-		}
 
-		private void applyRemove(Generic remove) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
-			try {
-				writeLockAndCheckMvcc(remove);
-				unplug(remove);
-			} finally {
-				writeUnlockAll();
+			@Override
+			public Generic get(Object o) {
+				return dependencies.get(o, getTs());
 			}
-		}
+		};
+	}
 
-		private void writeLockAllAndCheckMvcc(Iterable<Generic> adds, Iterable<Generic> removes) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
-			for (Generic remove : removes)
-				writeLockAndCheckMvcc(remove);
-			for (Generic add : adds)
-				writeLockAndCheckMvccForAdd(add);
-		}
+	protected Snapshot<Generic> snapshot(ValueIndexMap valueIndex, Serializable value) {
+		if (readOnly)
+			return untrackedSnapshot(valueIndex, value);
+		return () -> valueIndex.stream(value, getTs());
+	}
 
-		private void writeLockAndCheckMvccForAdd(Generic add) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
-			writeLockAndCheckMvcc(add.getMeta());
-			for (Generic superT : add.getSupers())
-				writeLockAndCheckMvcc(superT);
-			for (Generic component : add.getComponents())
-				writeLockAndCheckMvcc(component);
-			writeLockAndCheckMvcc(add);
-		}
+	// Read without lastReadTs adjustment : only for the transactions that never commit
+	private Snapshot<Generic> untrackedSnapshot(Dependencies dependencies) {
+		return new Snapshot<Generic>() {
 
-		private void writeLockAndCheckMvcc(Generic generic) throws ConcurrencyControlException, OptimisticLockConstraintViolationException {
-			if (generic != null) {
-				LifeManager manager = generic.getLifeManager();
-				if (!lockedLifeManagers.contains(manager)) {
-					manager.writeLock();
-					lockedLifeManagers.add(manager);
-					manager.checkMvcc(getTs());
-				}
+			@Override
+			public Stream<Generic> stream() {
+				return dependencies.untrackedStream(getTs());
 			}
-		}
 
-		private void writeUnlockAll() {
-			for (LifeManager lifeManager : lockedLifeManagers)
-				lifeManager.writeUnlock();
-			lockedLifeManagers = new HashSet<>();
-		}
+			@Override
+			public Generic get(Object o) {
+				return dependencies.untrackedGet(o, getTs());
+			}
+		};
 	}
 
+	private Snapshot<Generic> untrackedSnapshot(ValueIndexMap valueIndex, Serializable value) {
+		return () -> valueIndex.untrackedStream(value, getTs());
+	}
 }
@@ -0,0 +1,65 @@
+package org.genericsystem.kernel;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * The instances of a meta by value, alive or not : a lookup filters them at its ts like the instances of the meta. Enabled per meta, see {@link Root#enableValueIndex(Generic)}.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class ValueIndexMap {
+
+	// A concurrent hash map does not accept a null key
+	private static final Object NULL_VALUE = new Object();
+
+	private final Generic meta;
+	// Copied on write : the writers are serialized by the write lock of the meta
+	private final ConcurrentHashMap<Object, Generic[]> map = new ConcurrentHashMap<>();
+
+	ValueIndexMap(Generic meta) {
+		this.meta = meta;
+	}
+
+	private static Object getKey(Serializable value) {
+		return value != null ? value : NULL_VALUE;
+	}
+
+	void add(Generic instance) {
+		map.merge(getKey(instance.getValue()), new Generic[] { instance }, (instances, added) -> {
+			Generic[] result = Arrays.copyOf(instances, instances.length + 1);
+			result[instances.length] = added[0];
+			return result;
+		});
+	}
+
+	void remove(Generic instance) {
+		map.computeIfPresent(getKey(instance.getValue()), (key, instances) -> {
+			Generic[] result = Arrays.stream(instances).filter(x -> !x.equals(instance)).toArray(Generic[]::new);
+			return result.length != 0 ? result : null;
+		});
+	}
+
+	// Read under the lock of the meta, like the end of an iteration on its instances
+	Stream<Generic> stream(Serializable value, long ts) {
+		Generic[] instances;
+		LifeManager lifeManager = meta.getLifeManager();
+		lifeManager.readLock();
+		try {
+			instances = map.get(getKey(value));
+			lifeManager.atomicAdjustLastReadTs(ts);
+		} finally {
+			lifeManager.readUnlock();
+		}
+		return instances != null ? Arrays.stream(instances).filter(instance -> instance.getLifeManager().isAlive(ts)) : Stream.empty();
+	}
+
+	Stream<Generic> untrackedStream(Serializable value, long ts) {
+		Generic[] instances = map.get(getKey(value));
+		return instances != null ? Arrays.stream(instances).filter(instance -> instance.getLifeManager().isAliveUntracked(ts)) : Stream.empty();
+	}
+
+}
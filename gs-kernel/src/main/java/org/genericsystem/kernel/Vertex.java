@@ -3,47 +3,48 @@ package org.genericsystem.kernel;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 class Vertex {
 
+	private final Generic generic;
 	private final long ts;
 	private final Generic meta;
 	private final List<Generic> supers;
 	private final Serializable value;
 	private final List<Generic> components;
 	private final LifeManager lifeManager;
-	private final Dependencies dependencies;
-	private Map<Generic, Generic> nextDependencies = new HashMap<>();
+	// Allocated on the first add : most of the generics have no instance, no inheriting or no composite. Dependencies.EMPTY until then
+	private volatile Dependencies instances;
+	private volatile Dependencies inheritings;
+	private volatile Dependencies composites;
+	// Of the instances, null unless enabled
+	private volatile ValueIndexMap valueIndex;
+	// The next dependency in each list the vertex is linked to : its link in the instances of its meta, then in the inheritings of each super, then in the composites of each component. Allocated on the first link
+	private volatile AtomicReferenceArray<Generic> nextDependencies;
 
 	protected Vertex(Generic generic, long ts, Generic meta, List<Generic> supers, Serializable value, List<Generic> components, long[] otherTs) {
-		// this.generic = generic;
+		this.generic = generic;
 		this.ts = ts;
 		this.meta = meta != null ? meta : generic;
 		this.value = value;
 		for (Generic component : components)
 			assert component != null && !equals(component);
-		this.components = Collections.unmodifiableList(new ArrayList<>(components));
-		this.supers = Collections.unmodifiableList(new ArrayList<>(supers));
+		this.components = compact(components);
+		this.supers = compact(supers);
 		lifeManager = new LifeManager(otherTs);
-		this.dependencies = new Dependencies() {
-			@Override
-			public Generic getAncestor() {
-				return generic;
-			}
-		};
+	}
+
+	// The empty lists are shared
+	private static List<Generic> compact(List<Generic> generics) {
+		return generics.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(generics));
 	}
 
 	long getTs() {
 		return ts;
 	}
 
-	// Generic getGeneric() {
-	// return generic;
-	// }
-
 	Generic getMeta() {
 		return meta;
 	}
@@ -64,16 +65,100 @@ class Vertex {
 		return lifeManager;
 	}
 
-	Dependencies getDependencies() {
-		return dependencies;
+	Dependencies getInstances() {
+		Dependencies instances = this.instances;
+		return instances != null ? instances : Dependencies.EMPTY;
+	}
+
+	Dependencies getInheritings() {
+		Dependencies inheritings = this.inheritings;
+		return inheritings != null ? inheritings : Dependencies.EMPTY;
+	}
+
+	Dependencies getComposites() {
+		Dependencies composites = this.composites;
+		return composites != null ? composites : Dependencies.EMPTY;
+	}
+
+	// The dependencies are added under the write lock of the ancestor, but the loads link without lock
+	synchronized Dependencies buildInstances() {
+		if (instances == null)
+			instances = new Dependencies() {
+				@Override
+				public Generic getAncestor() {
+					return generic;
+				}
+
+				@Override
+				int getIndex(Generic instance) {
+					return 0;
+				}
+			};
+		return instances;
+	}
+
+	synchronized Dependencies buildInheritings() {
+		if (inheritings == null)
+			inheritings = new Dependencies() {
+				@Override
+				public Generic getAncestor() {
+					return generic;
+				}
+
+				@Override
+				int getIndex(Generic inheriting) {
+					return 1 + inheriting.getSupers().indexOf(generic);
+				}
+			};
+		return inheritings;
+	}
+
+	synchronized Dependencies buildComposites() {
+		if (composites == null)
+			composites = new Dependencies() {
+				@Override
+				public Generic getAncestor() {
+					return generic;
+				}
+
+				// A composite is linked once, at the first position of the component
+				@Override
+				int getIndex(Generic composite) {
+					return 1 + composite.getSupers().size() + composite.getComponents().indexOf(generic);
+				}
+			};
+		return composites;
+	}
+
+	ValueIndexMap getValueIndex() {
+		return valueIndex;
+	}
+
+	void setValueIndex(ValueIndexMap valueIndex) {
+		this.valueIndex = valueIndex;
+	}
+
+	Generic getNextDependency(int index) {
+		AtomicReferenceArray<Generic> nextDependencies = this.nextDependencies;
+		return nextDependencies != null ? nextDependencies.get(index) : null;
 	}
 
-	Generic getNextDependency(Generic ancestor) {
-		return nextDependencies.get(ancestor);
+	// Concurrent : the untracked readers follow the dependencies without lock
+	void setNextDependency(int index, Generic nextDependency) {
+		AtomicReferenceArray<Generic> nextDependencies = this.nextDependencies;
+		if (nextDependencies == null) {
+			if (nextDependency == null)
+				return;
+			nextDependencies = buildNextDependencies();
+		}
+		nextDependencies.set(index, nextDependency);
 	}
 
-	void setNextDependency(Generic ancestor, Generic nextDependency) {
-		nextDependencies.put(ancestor, nextDependency);
+	// The lists of several ancestors may be linked concurrently
+	private synchronized AtomicReferenceArray<Generic> buildNextDependencies() {
+		if (nextDependencies == null)
+			nextDependencies = new AtomicReferenceArray<>(1 + supers.size() + components.size());
+		return nextDependencies;
 	}
 
 }
@@ -0,0 +1,51 @@
+package org.genericsystem.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.genericsystem.kernel.Generic;
+
+/**
+ * Cost of the accessors of the generics in a traversal : inheritsFrom() follows the supers, getLevel() the metas and isAlive() reads the life managers. Not a test, run it with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.genericsystem.cache.AccessorBenchmark</code>.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class AccessorBenchmark {
+
+	private static final int DEPTH = 20;
+	private static final int ITERATIONS = 200000;
+	private static final int WARMUPS = 5;
+
+	public static void main(String[] args) {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		List<Generic> types = new ArrayList<>();
+		Generic type = engine.addInstance("Type0");
+		types.add(type);
+		for (int i = 1; i < DEPTH; i++)
+			types.add(type = engine.addInstance(type, "Type" + i));
+		Generic instance = type.addInstance("instance");
+		cache.flush();
+
+		Generic root = types.get(0);
+		Generic leaf = type;
+		run("inheritsFrom", () -> leaf.inheritsFrom(root));
+		run("getLevel", () -> instance.getLevel() == 2);
+		run("isAlive", () -> types.stream().allMatch(Generic::isAlive));
+	}
+
+	private static void run(String name, BooleanSupplier operation) {
+		long nanos = 0L;
+		for (int warmup = 0; warmup <= WARMUPS; warmup++) {
+			long begin = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+				if (!operation.getAsBoolean())
+					throw new IllegalStateException(name);
+			nanos = System.nanoTime() - begin;
+		}
+		System.out.println(String.format("%-12s : %,8.1f ns/op", name, (double) nanos / ITERATIONS));
+	}
+}
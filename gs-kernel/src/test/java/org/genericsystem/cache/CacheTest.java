@@ -3,6 +3,7 @@ package org.genericsystem.cache;
 import java.util.stream.Collectors;
 
 import org.genericsystem.api.core.exceptions.CacheNoStartedException;
+import org.genericsystem.cache.Cache.Savepoint;
 import org.genericsystem.kernel.Generic;
 import org.testng.annotations.Test;
 
@@ -162,4 +163,53 @@ public class CacheTest extends AbstractTest {
 		assert !vehiclePower.isAlive();
 		assert vehicle.getComposites().isEmpty() : vehicle.getComposites().stream().collect(Collectors.toList());
 	}
+
+	public void test006_savepoint() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic vehicle = engine.addInstance("Vehicle");
+		Savepoint savepoint = cache.savepoint("car");
+		Generic car = vehicle.addInstance("car");
+		Savepoint savepoint2 = cache.savepoint();
+		Generic bike = vehicle.addInstance("bike");
+		assert cache.getCacheLevel() == 2;
+
+		cache.rollbackTo(savepoint2);
+		assert !bike.isAlive();
+		assert car.isAlive();
+		cache.rollbackTo(savepoint);
+		assert !car.isAlive();
+		assert vehicle.isAlive();
+		assert cache.getCacheLevel() == 1;
+		try {
+			cache.rollbackTo(savepoint2);
+			assert false;
+		} catch (IllegalStateException ignore) {}
+
+		Generic truck = vehicle.addInstance("truck");
+		cache.release(savepoint);
+		assert cache.getCacheLevel() == 0;
+		assert truck.isAlive();
+		cache.flush();
+		cache.clear();
+		assert truck.isAlive();
+		assert vehicle.getInstances().size() == 1;
+	}
+
+	public void test007_releaseNestedSavepoints() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic vehicle = engine.addInstance("Vehicle");
+		Savepoint savepoint = cache.savepoint();
+		Generic car = vehicle.addInstance("car");
+		cache.savepoint();
+		car.remove();
+		Generic bike = vehicle.addInstance("bike");
+		cache.release(savepoint);
+		assert cache.getCacheLevel() == 0;
+		assert !car.isAlive();
+		assert bike.isAlive();
+		cache.flush();
+		assert vehicle.getInstances().size() == 1;
+	}
 }
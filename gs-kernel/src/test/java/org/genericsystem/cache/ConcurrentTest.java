@@ -1,5 +1,15 @@
 package org.genericsystem.cache;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
+import org.genericsystem.api.core.exceptions.OptimisticLockConstraintViolationException;
+import org.genericsystem.api.core.exceptions.RollbackException;
 import org.genericsystem.kernel.Generic;
 import org.testng.annotations.Test;
 
@@ -60,6 +70,147 @@ public class ConcurrentTest extends AbstractTest {
 		assert !cache2.isAlive(car);
 		assert !engine.getInstances().contains(car);
 	}
+
+	public void testReadOnlyCache() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		cache.flush();
+		cache.shiftTs();
+
+		Cache readOnlyCache = engine.newReadOnlyCache().start();
+		assert readOnlyCache.getTs() > cache.getTs();
+		assert readOnlyCache.isAlive(car);
+		assert car.getInstances().isEmpty();
+		try {
+			car.addInstance("myCar");
+			assert false;
+		} catch (UnsupportedOperationException ignore) {}
+
+		cache.start();
+		car.addInstance("myCar");
+		cache.tryFlush();
+
+		// Not repeatable : the commit is stamped with the ts of its cache, before the pinned ts
+		readOnlyCache.start();
+		assert car.getInstance("myCar") != null;
+
+		engine.newCache().start();
+		car.addInstance("myCar2");
+		engine.getCurrentCache().flush();
+		readOnlyCache.start();
+		assert car.getInstance("myCar2") == null;
+		readOnlyCache.shiftTs();
+		assert car.getInstance("myCar2") != null;
+	}
+
+	public void testParallelFlushes() throws Exception {
+		Engine engine = new Engine();
+		List<Generic> types = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			types.add(engine.addInstance("Type" + i));
+		engine.getCurrentCache().flush();
+
+		ExecutorService executor = Executors.newFixedThreadPool(types.size());
+		List<Future<?>> futures = new ArrayList<>();
+		for (Generic type : types)
+			futures.add(executor.submit(() -> {
+				Cache cache = engine.newCache().start();
+				for (int i = 0; i < 100; i++) {
+					type.addInstance("instance" + i);
+					cache.flush();
+				}
+			}));
+		for (Future<?> future : futures)
+			future.get();
+		executor.shutdown();
+
+		engine.getCurrentCache().shiftTs();
+		for (Generic type : types)
+			assert type.getInstances().size() == 100 : type.getInstances().info();
+	}
+
+	public void testGroupCommit() throws Exception {
+		Engine engine = new Engine();
+		engine.setGroupCommit(true);
+		List<Generic> types = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			types.add(engine.addInstance("Type" + i));
+		engine.getCurrentCache().flush();
+
+		ExecutorService executor = Executors.newFixedThreadPool(types.size());
+		List<Future<?>> futures = new ArrayList<>();
+		for (Generic type : types)
+			futures.add(executor.submit(() -> {
+				Cache cache = engine.newCache().start();
+				for (int i = 0; i < 100; i++) {
+					type.addInstance("instance" + i);
+					cache.flush();
+				}
+			}));
+		for (Future<?> future : futures)
+			future.get();
+		executor.shutdown();
+
+		engine.getCurrentCache().shiftTs();
+		for (Generic type : types)
+			assert type.getInstances().size() == 100 : type.getInstances().info();
+	}
+
+	public void testGroupCommitConflict() {
+		Engine engine = new Engine();
+		engine.setGroupCommit(true);
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		cache.flush();
+		cache.shiftTs();
+		car.addInstance("myCar");
+
+		Cache cache2 = engine.newCache().start();
+		car.remove();
+		cache2.flush();
+
+		cache.start();
+		try {
+			cache.flush();
+			assert false;
+		} catch (RollbackException e) {
+			assert e.getCause() instanceof OptimisticLockConstraintViolationException : e.getCause();
+		}
+		cache.shiftTs();
+		assert !cache.isAlive(car);
+	}
+
+	public void testLockTimeout() throws Exception {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		cache.flush();
+		car.addInstance("myCar");
+
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread locker = new Thread(() -> {
+			car.getLifeManager().readLock();
+			locked.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException ignore) {} finally {
+				car.getLifeManager().readUnlock();
+			}
+		});
+		locker.start();
+		locked.await();
+		try {
+			cache.tryFlush();
+			assert false;
+		} catch (ConcurrencyControlException ignore) {}
+		release.countDown();
+		locker.join();
+
+		cache.tryFlush();
+		assert car.getInstance("myCar") != null;
+	}
 	//
 	// // TODO: to CacheTest
 	// public void testRemoveIntegrityConstraintViolation() {
@@ -0,0 +1,64 @@
+package org.genericsystem.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.genericsystem.kernel.Generic;
+
+/**
+ * Flush throughput of non overlapping transactions : each thread adds instances of its own type and flushes them one by one. Not a test, run it with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.genericsystem.cache.FlushBenchmark</code>, the argument is the maximum number of threads.
+ *
+ * The numbers only compare runs on the same machine : on a single core the threads interleave and the throughput can't scale with them.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class FlushBenchmark {
+
+	private static final int FLUSHES = 200;
+	private static final int WARMUPS = 2;
+
+	public static void main(String[] args) throws Exception {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			for (int i = 0; i < WARMUPS; i++)
+				run(threads);
+			long nanos = run(threads);
+			System.out.println(String.format("%2d threads : %,10.0f flushes/s", threads, threads * FLUSHES * 1E9 / nanos));
+		}
+	}
+
+	private static long run(int threads) throws Exception {
+		Engine engine = new Engine();
+		List<Generic> types = new ArrayList<>();
+		for (int i = 0; i < threads; i++)
+			types.add(engine.addInstance("Type" + i));
+		engine.getCurrentCache().flush();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (Generic type : types)
+			futures.add(executor.submit(() -> {
+				Cache cache = engine.newCache().start();
+				start.await();
+				for (int i = 0; i < FLUSHES; i++) {
+					type.addInstance(i);
+					cache.flush();
+				}
+				return null;
+			}));
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Future<?> future : futures)
+			future.get();
+		long nanos = System.nanoTime() - begin;
+		executor.shutdown();
+		return nanos;
+	}
+}
@@ -0,0 +1,55 @@
+package org.genericsystem.cache;
+
+import org.genericsystem.kernel.Generic;
+
+/**
+ * Heap retained per generic, its vertex and its links in the dependencies of its ancestors included : a concrete holder has a meta and a component, an instance has a meta only. Not a test, run it with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.genericsystem.cache.FootprintReport</code>.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class FootprintReport {
+
+	// Small : the checks of an add grow with the instances of its meta
+	private static final int GENERICS = 500;
+	private static final int BATCH = 100;
+
+	public static void main(String[] args) {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		Generic power = car.addAttribute("Power");
+		cache.flush();
+
+		long before = usedMemory();
+		Generic[] cars = new Generic[GENERICS];
+		for (int i = 0; i < GENERICS; i++) {
+			cars[i] = car.addInstance(i);
+			if (i % BATCH == BATCH - 1)
+				cache.flush();
+		}
+		cache.flush();
+		long instances = usedMemory();
+		for (int i = 0; i < GENERICS; i++) {
+			cars[i].addHolder(power, i);
+			if (i % BATCH == BATCH - 1)
+				cache.flush();
+		}
+		cache.flush();
+		long holders = usedMemory();
+		System.out.println(String.format("instance : %,6d bytes/generic", (instances - before) / GENERICS));
+		System.out.println(String.format("holder   : %,6d bytes/generic", (holders - instances) / GENERICS));
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50L);
+			} catch (InterruptedException ignore) {}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
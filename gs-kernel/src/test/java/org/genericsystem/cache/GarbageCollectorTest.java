@@ -0,0 +1,134 @@
+package org.genericsystem.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.genericsystem.kernel.Generic;
+import org.genericsystem.kernel.GroupCommit;
+import org.testng.annotations.Test;
+
+@Test
+public class GarbageCollectorTest extends AbstractTest {
+
+	public void test001() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		Generic myCar = car.addInstance("myCar");
+		cache.flush();
+
+		Cache reader = engine.newCache().start();
+		assert car.getInstances().contains(myCar);
+
+		cache.start();
+		cache.shiftTs();
+		myCar.remove();
+		cache.flush();
+		GarbageCollector garbageCollector = engine.getGarbageCollector();
+		assert garbageCollector.size() == 1;
+
+		// The reader has started before the remove : myCar is kept for it
+		garbageCollector.runGarbage();
+		garbageCollector.runGarbage();
+		assert garbageCollector.size() == 1;
+		reader.start();
+		assert car.getInstances().contains(myCar);
+		reader.stop();
+
+		cache.start();
+		cache.shiftTs();
+		garbageCollector.runGarbage();
+		assert garbageCollector.size() == 1;
+		assert car.getInstances().isEmpty();
+		cache.shiftTs();
+		garbageCollector.runGarbage();
+		assert garbageCollector.size() == 0;
+		assert car.getInstances().isEmpty();
+	}
+
+	public void test002() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		Generic power = engine.addInstance("Power", car);
+		Generic myCar = car.addInstance("myCar");
+		myCar.addHolder(power, 233);
+		cache.flush();
+		cache.shiftTs();
+
+		myCar.remove();
+		cache.flush();
+		cache.shiftTs();
+		GarbageCollector garbageCollector = engine.getGarbageCollector();
+		for (int i = 0; garbageCollector.size() != 0; i++) {
+			assert i < 5 : garbageCollector.size();
+			garbageCollector.runGarbage();
+			cache.shiftTs();
+		}
+		assert car.getInstances().isEmpty();
+		assert power.getInstances().isEmpty();
+		Generic myCar2 = car.addInstance("myCar");
+		cache.flush();
+		assert myCar2 != myCar;
+		assert car.getInstances().contains(myCar2);
+	}
+
+	public void test003() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		Generic myCar = car.addInstance("myCar");
+		cache.flush();
+
+		Cache reader = engine.newCache().start();
+		assert car.getInstances().contains(myCar);
+		reader.stop();
+		long readerTs = reader.getTs();
+
+		cache.start();
+		cache.shiftTs();
+		myCar.remove();
+		cache.flush();
+		cache.shiftTs();
+		GarbageCollector garbageCollector = engine.getGarbageCollector();
+		garbageCollector.runGarbage();
+		assert car.getInstances().isEmpty();
+
+		// myCar may have been unlinked : the reader goes on at a new ts, where it is consistently dead
+		reader.start();
+		assert reader.getTs() > readerTs;
+		assert !reader.isAlive(myCar);
+		assert car.getInstances().isEmpty();
+	}
+
+	public void test004() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		Generic myCar = car.addInstance("myCar");
+		Generic myBike = car.addInstance("myBike");
+		cache.flush();
+		cache.shiftTs();
+
+		Transaction failing = new Transaction(engine) {
+			@Override
+			protected void unplug(Generic generic) {
+				super.unplug(generic);
+				if (generic == myBike)
+					throw new IllegalStateException("Unplug failure");
+			}
+		};
+		GroupCommit groupCommit = new GroupCommit(engine);
+		GroupCommit.Commit failed = groupCommit.add(failing, Arrays.asList(myCar, myBike), Collections.emptyList());
+		groupCommit.apply();
+		assert failed.getFailure() instanceof IllegalStateException : failed.getFailure();
+
+		// The undone removes are not collected
+		GarbageCollector garbageCollector = engine.getGarbageCollector();
+		assert garbageCollector.size() == 0 : garbageCollector.size();
+		cache.shiftTs();
+		garbageCollector.runGarbage();
+		assert car.getInstances().contains(myCar);
+		assert car.getInstances().contains(myBike);
+	}
+}
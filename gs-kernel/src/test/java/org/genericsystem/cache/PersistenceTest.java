@@ -1,12 +1,16 @@
 package org.genericsystem.cache;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
 import org.genericsystem.api.core.annotations.SystemGeneric;
+import org.genericsystem.kernel.Archiver;
+import org.genericsystem.kernel.ArchiverPolicy;
 import org.genericsystem.kernel.Generic;
 import org.genericsystem.kernel.Generic.GenericImpl;
 import org.genericsystem.kernel.LifeManager;
@@ -158,6 +162,127 @@ public class PersistenceTest extends AbstractTest {
 		compareGraph(root, new Engine(Statics.ENGINE_VALUE, snapshot));
 	}
 
+	public void testJournalWithoutSnapshot() throws IOException {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Engine root = new Engine(Statics.ENGINE_VALUE, snapshot);
+		Generic vehicle = root.addInstance("Vehicle");
+		Generic myCar = vehicle.addInstance("myCar");
+		root.getCurrentCache().flush();
+		myCar.remove();
+		vehicle.addInstance("myBike");
+		root.getCurrentCache().flush();
+		Engine engine = new Engine(Statics.ENGINE_VALUE, copyDirectory(snapshot, directoryPath + new Random().nextInt()));
+		compareGraph(root, engine);
+		assert engine.getInstance("Vehicle").getInstance("myBike") != null;
+		assert engine.getInstance("Vehicle").getInstance("myCar") == null;
+		root.close();
+		engine.close();
+	}
+
+	public void testJournalAfterSnapshot() throws IOException {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Engine root = new Engine(Statics.ENGINE_VALUE, snapshot, Vehicle.class);
+		root.find(Vehicle.class).addInstance("myCar");
+		root.getCurrentCache().flush();
+		root.close();
+		Engine root2 = new Engine(Statics.ENGINE_VALUE, snapshot, Vehicle.class);
+		root2.find(Vehicle.class).addInstance("myBike");
+		root2.getCurrentCache().flush();
+		Engine engine = new Engine(Statics.ENGINE_VALUE, copyDirectory(snapshot, directoryPath + new Random().nextInt()), Vehicle.class);
+		compareGraph(root2, engine);
+		assert engine.find(Vehicle.class).getInstance("myBike") != null;
+		root2.close();
+		engine.close();
+	}
+
+	public void testDelta() {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Engine root = new Engine(Statics.ENGINE_VALUE, snapshot, new ArchiverPolicy().setPeriod(0L));
+		Generic vehicle = root.addInstance("Vehicle");
+		Generic myCar = vehicle.addInstance("myCar");
+		root.getCurrentCache().flush();
+		root.snapshot();
+		myCar.remove();
+		Generic myBike = vehicle.addInstance("myBike");
+		vehicle.addInstance("myTruck").remove();
+		root.getCurrentCache().flush();
+		root.close();
+		assert new File(snapshot).listFiles((dir, name) -> name.endsWith(".gsd")).length == 1;
+		Engine engine = new Engine(Statics.ENGINE_VALUE, snapshot);
+		compareGraph(root, engine);
+		assert engine.getInstance("Vehicle").getInstance("myCar") == null;
+		assert engine.getInstance("Vehicle").getInstance("myBike").getLifeManager().getBirthTs() == myBike.getLifeManager().getBirthTs();
+		engine.close();
+	}
+
+	// The snapshots triggered by the commits are taken before close() returns
+	public void testPolicy() {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		ArchiverPolicy policy = new ArchiverPolicy().setPeriod(0L).setCommitsBeforeSnapshot(2L).setDeltasBeforeFullSnapshot(0).setMaxSnapshots(2);
+		Engine root = new Engine(Statics.ENGINE_VALUE, snapshot, policy);
+		Generic vehicle = root.addInstance("Vehicle");
+		for (int i = 0; i < 6; i++) {
+			vehicle.addInstance("myVehicle" + i);
+			root.getCurrentCache().flush();
+		}
+		root.close();
+		assert new File(snapshot).listFiles((dir, name) -> name.endsWith(Archiver.getFileExtension())).length == 2;
+		Engine engine = new Engine(Statics.ENGINE_VALUE, snapshot);
+		compareGraph(root, engine);
+		engine.close();
+	}
+
+	// The commits are stamped with the ts of their cache : the cache is shifted after the ts of the recovery is picked
+	public void testPointInTime() {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Engine root = new Engine(Statics.ENGINE_VALUE, snapshot, new ArchiverPolicy().setPeriod(0L));
+		Generic vehicle = root.addInstance("Vehicle");
+		Generic myCar = vehicle.addInstance("myCar");
+		root.getCurrentCache().flush();
+		root.snapshot();
+		long ts1 = root.pickNewTs();
+		root.getCurrentCache().shiftTs();
+		myCar.remove();
+		vehicle.addInstance("myBike");
+		root.getCurrentCache().flush();
+		root.snapshot();
+		long ts2 = root.pickNewTs();
+		root.getCurrentCache().shiftTs();
+		vehicle.addInstance("myTruck");
+		root.getCurrentCache().flush();
+
+		Engine engine1 = new Engine(Statics.ENGINE_VALUE, snapshot, ts1);
+		assert engine1.isReadOnly();
+		assert engine1.getInstance("Vehicle").getInstance("myCar") != null;
+		assert engine1.getInstance("Vehicle").getInstance("myBike") == null;
+		engine1.getInstance("Vehicle").addInstance("myPlane");
+		try {
+			engine1.getCurrentCache().flush();
+			assert false;
+		} catch (UnsupportedOperationException ignore) {}
+		engine1.close();
+
+		Engine engine2 = new Engine(Statics.ENGINE_VALUE, snapshot, ts2);
+		assert engine2.getInstance("Vehicle").getInstance("myCar") == null;
+		assert engine2.getInstance("Vehicle").getInstance("myBike") != null;
+		assert engine2.getInstance("Vehicle").getInstance("myTruck") == null;
+		engine2.close();
+
+		Engine engine3 = new Engine(Statics.ENGINE_VALUE, snapshot, root.pickNewTs());
+		compareGraph(root, engine3);
+		engine3.close();
+		root.close();
+	}
+
+	private static String copyDirectory(String sourcePath, String directoryPath) throws IOException {
+		cleanDirectory(directoryPath);
+		new File(directoryPath).mkdirs();
+		for (File f : new File(sourcePath).listFiles())
+			if (!f.getName().startsWith("."))
+				Files.copy(f.toPath(), new File(directoryPath, f.getName()).toPath());
+		return directoryPath;
+	}
+
 	private static String cleanDirectory(String directoryPath) {
 		File file = new File(directoryPath);
 		if (file.exists())
@@ -0,0 +1,101 @@
+package org.genericsystem.cache;
+
+import java.util.Collections;
+
+import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
+import org.genericsystem.api.core.exceptions.OptimisticLockConstraintViolationException;
+import org.genericsystem.api.core.exceptions.RollbackException;
+import org.genericsystem.kernel.ConcurrencyMetrics;
+import org.genericsystem.kernel.Generic;
+import org.testng.annotations.Test;
+
+@Test
+public class RetryPolicyTest extends AbstractTest {
+
+	public void test001() {
+		RetryPolicy retryPolicy = new RetryPolicy().setInitialDelay(10L).setMaxDelay(100L).setMultiplier(2d).setJitter(0d);
+		assert retryPolicy.getDelay(0) == 10L;
+		assert retryPolicy.getDelay(1) == 20L;
+		assert retryPolicy.getDelay(3) == 80L;
+		assert retryPolicy.getDelay(4) == 100L;
+		assert retryPolicy.getDelay(100) == 100L;
+		retryPolicy.setJitter(0.5d);
+		for (int attempt = 0; attempt < 100; attempt++) {
+			long delay = retryPolicy.getDelay(4);
+			assert delay >= 50L && delay <= 100L : delay;
+		}
+		try {
+			retryPolicy.setJitter(2d);
+			assert false;
+		} catch (IllegalArgumentException ignore) {}
+	}
+
+	public void test002() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		cache.flush();
+		cache.shiftTs();
+		car.addInstance("myCar");
+
+		engine.newCache().start();
+		assert car.getInstances().isEmpty();
+
+		// The read of the second cache makes the first attempt fail, the rebased one succeeds
+		cache.start();
+		engine.getConcurrencyMetrics().reset();
+		cache.flush();
+		assert car.getInstance("myCar") != null;
+
+		ConcurrencyMetrics metrics = engine.getConcurrencyMetrics();
+		assert metrics.getFlushes() == 1L;
+		assert metrics.getRetries() == 1L;
+		assert metrics.getConflicts() == 1L;
+		assert metrics.getRetriesPerFlush() == 1d;
+		assert metrics.getConflicts(car) == 1L;
+		assert metrics.getHottestGenerics(10).equals(Collections.singletonList(car));
+		assert metrics.getConflictsByMeta().equals(Collections.singletonMap(engine, 1L));
+	}
+
+	public void test003() {
+		Engine engine = new Engine();
+		engine.setRetryPolicy(new RetryPolicy().setMaxAttempts(1));
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		cache.flush();
+		cache.shiftTs();
+		car.addInstance("myCar");
+
+		engine.newCache().start();
+		assert car.getInstances().isEmpty();
+
+		cache.start();
+		try {
+			cache.flush();
+			assert false;
+		} catch (RollbackException e) {
+			assert e.getCause() instanceof ConcurrencyControlException : e.getCause();
+		}
+	}
+
+	public void test004() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic car = engine.addInstance("Car");
+		cache.flush();
+		cache.shiftTs();
+		car.addInstance("myCar");
+
+		Cache cache2 = engine.newCache().start();
+		car.remove();
+		cache2.flush();
+
+		cache.start();
+		try {
+			cache.flush();
+			assert false;
+		} catch (RollbackException e) {
+			assert e.getCause() instanceof OptimisticLockConstraintViolationException : e.getCause();
+		}
+	}
+}
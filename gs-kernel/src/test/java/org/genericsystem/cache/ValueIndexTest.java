@@ -0,0 +1,69 @@
+package org.genericsystem.cache;
+
+import org.genericsystem.api.core.annotations.SystemGeneric;
+import org.genericsystem.api.core.annotations.ValueIndex;
+import org.genericsystem.kernel.Generic;
+import org.testng.annotations.Test;
+
+@Test
+public class ValueIndexTest extends AbstractTest {
+
+	public void test001() {
+		Engine engine = new Engine();
+		Cache cache = engine.getCurrentCache();
+		Generic user = engine.addInstance("User");
+		for (int i = 0; i < 10; i++)
+			user.addInstance("login" + i);
+		cache.flush();
+
+		// The existing instances are indexed
+		assert !engine.isValueIndexEnabled(user);
+		engine.enableValueIndex(user);
+		assert engine.isValueIndexEnabled(user);
+		Generic login5 = user.getInstance("login5");
+		assert login5 != null && login5.getValue().equals("login5");
+		assert user.getInstance("login10") == null;
+
+		Generic login10 = user.addInstance("login10");
+		assert user.getInstance("login10") == login10;
+		login5.remove();
+		assert user.getInstance("login5") == null;
+		cache.flush();
+		assert user.getInstance("login10") == login10;
+		assert user.getInstance("login5") == null;
+		assert user.getInstances("login10").size() == 1;
+
+		// Not visible before its commit
+		Cache cache2 = engine.newCache().start();
+		Generic login11 = user.addInstance("login11");
+		cache.start();
+		assert user.getInstance("login11") == null;
+		cache2.start();
+		cache2.flush();
+		cache.start();
+		cache.shiftTs();
+		assert user.getInstance("login11") == login11;
+	}
+
+	@SystemGeneric
+	@ValueIndex
+	public static class User {}
+
+	public void test002() {
+		Engine engine = new Engine(User.class);
+		Generic user = engine.find(User.class);
+		assert engine.isValueIndexEnabled(user);
+		Generic login = user.addInstance("login");
+		assert user.getInstance("login") == login;
+		Generic nullValue = user.addInstance(null);
+		assert user.getInstance((String) null) == nullValue;
+		engine.getCurrentCache().flush();
+		assert user.getInstance("login") == login;
+		assert user.getInstance((String) null) == nullValue;
+
+		// A read-only cache does not track its lookups
+		Cache readOnlyCache = engine.newReadOnlyCache().start();
+		assert user.getInstance("login") == login;
+		assert user.getLifeManager().getLastReadTs() < readOnlyCache.getTs();
+	}
+}
@@ -0,0 +1,84 @@
+package org.genericsystem.kernel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.testng.annotations.Test;
+
+@Test
+public class CodecTest extends AbstractTest {
+
+	private static byte[] roundTrip(Codec codec, byte[] bytes) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (OutputStream outputStream = codec.compress(compressed)) {
+			outputStream.write(bytes);
+		}
+		ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+		try (InputStream inputStream = codec.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+			byte[] buffer = new byte[4096];
+			for (int read; (read = inputStream.read(buffer)) != -1;)
+				decompressed.write(buffer, 0, read);
+		}
+		return decompressed.toByteArray();
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(0).nextBytes(bytes);
+		return bytes;
+	}
+
+	private static byte[] repetitiveBytes(int length) {
+		byte[] bytes = new byte[length];
+		Random random = new Random(0);
+		for (int i = 0; i < length; i++)
+			bytes[i] = (byte) (i % 1000 < 500 ? i % 7 : 'a' + random.nextInt(4));
+		return bytes;
+	}
+
+	public void test001() throws IOException {
+		for (Codec codec : Arrays.asList(Codec.NONE, Codec.deflate(Deflater.BEST_SPEED), Codec.LZ)) {
+			assert roundTrip(codec, new byte[0]).length == 0;
+			byte[] random = randomBytes(3 * LzCodec.BLOCK_SIZE + 17);
+			assert Arrays.equals(random, roundTrip(codec, random));
+			byte[] repetitive = repetitiveBytes(3 * LzCodec.BLOCK_SIZE + 17);
+			assert Arrays.equals(repetitive, roundTrip(codec, repetitive));
+		}
+	}
+
+	public void test002() throws IOException {
+		byte[] repetitive = repetitiveBytes(LzCodec.BLOCK_SIZE);
+		byte[] compressed = new byte[LzCodec.maxCompressedLength(repetitive.length)];
+		int length = LzCodec.compress(repetitive, repetitive.length, compressed, new int[1 << 14]);
+		assert length < repetitive.length / 2 : length;
+		byte[] decompressed = new byte[repetitive.length];
+		LzCodec.decompress(compressed, length, decompressed, repetitive.length);
+		assert Arrays.equals(repetitive, decompressed);
+	}
+
+	public void test003() throws IOException {
+		byte[] repetitive = repetitiveBytes(LzCodec.BLOCK_SIZE);
+		byte[] compressed = new byte[LzCodec.maxCompressedLength(repetitive.length)];
+		int length = LzCodec.compress(repetitive, repetitive.length, compressed, new int[1 << 14]);
+		try {
+			LzCodec.decompress(compressed, length, new byte[repetitive.length], repetitive.length - 1);
+			assert false;
+		} catch (StreamCorruptedException ignore) {}
+	}
+
+	public void test004() throws IOException {
+		assert Codec.get(Codec.LZ_ID, null) == Codec.LZ;
+		assert Codec.get(Codec.DEFLATE_ID, Codec.NONE).getId() == Codec.DEFLATE_ID;
+		try {
+			Codec.get((byte) 15, null);
+			assert false;
+		} catch (StreamCorruptedException ignore) {}
+	}
+}
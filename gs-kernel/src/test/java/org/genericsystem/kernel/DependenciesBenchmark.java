@@ -0,0 +1,53 @@
+package org.genericsystem.kernel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Dependencies of a type with a large number of instances : the instances are built and linked directly, without the checks of the adds. Not a test, run it with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.genericsystem.kernel.DependenciesBenchmark -Dexec.args=1000000</code>.
+ *
+ * @author Nicolas Feybesse
+ * @author Michael Ory
+ */
+public class DependenciesBenchmark {
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		Root root = new Root();
+		Generic car = root.addInstance("Car");
+		long ts = root.pickNewTs();
+		List<Generic> instances = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			instances.add(root.init(ts, null, car, Collections.emptyList(), i, Collections.emptyList(), new long[] { ts, 0L, Long.MAX_VALUE }));
+		Dependencies dependencies = root.getInstances(car);
+
+		long begin = System.nanoTime();
+		for (Generic instance : instances)
+			dependencies.add(instance);
+		report("add", begin, size);
+
+		begin = System.nanoTime();
+		long count = dependencies.stream(ts).count();
+		report("iterate", begin, size);
+		assert count == size;
+
+		begin = System.nanoTime();
+		for (Generic instance : instances)
+			dependencies.get(instance, ts);
+		report("get", begin, size);
+
+		Collections.shuffle(instances, new Random(0L));
+		begin = System.nanoTime();
+		for (Generic instance : instances)
+			dependencies.remove(instance);
+		report("remove", begin, size);
+		assert dependencies.isEmpty();
+	}
+
+	private static void report(String name, long begin, int size) {
+		System.out.println(String.format("%-8s : %,8.1f ns/op", name, (double) (System.nanoTime() - begin) / size));
+	}
+}
@@ -0,0 +1,111 @@
+package org.genericsystem.kernel;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+@Test
+public class DependenciesTest extends AbstractTest {
+
+	public void test001() {
+		Root root = new Root();
+		Generic car = root.addInstance("Car");
+		Generic myCar1 = car.addInstance("myCar1");
+		Generic myCar2 = car.addInstance("myCar2");
+		Generic myCar3 = car.addInstance("myCar3");
+		Generic myCar4 = car.addInstance("myCar4");
+		Dependencies dependencies = root.getInstances(car);
+		long ts = root.getCurrentCache().getTs();
+
+		assert dependencies.remove(myCar1);
+		assert !dependencies.remove(myCar1);
+		assert dependencies.remove(myCar3);
+		assert dependencies.stream(ts).collect(Collectors.toList()).equals(Arrays.asList(myCar2, myCar4));
+		assert dependencies.remove(myCar4);
+		dependencies.add(myCar3);
+		assert dependencies.stream(ts).collect(Collectors.toList()).equals(Arrays.asList(myCar2, myCar3));
+		assert dependencies.get(myCar3, ts) == myCar3;
+		assert dependencies.get(myCar4, ts) == null;
+		assert dependencies.remove(myCar2);
+		assert dependencies.remove(myCar3);
+		assert dependencies.isEmpty();
+		dependencies.add(myCar1);
+		assert dependencies.stream(ts).collect(Collectors.toList()).equals(Arrays.asList(myCar1));
+	}
+
+	public void test002() {
+		Root root = new Root();
+		Generic car = root.addInstance("Car");
+		Generic myCar1 = car.addInstance("myCar1");
+		Generic myCar2 = car.addInstance("myCar2");
+		Generic myCar3 = car.addInstance("myCar3");
+		Dependencies dependencies = root.getInstances(car);
+
+		// An iteration positioned on a removed dependency goes on
+		Iterator<Generic> iterator = dependencies.iterator(root.getCurrentCache().getTs());
+		assert iterator.next() == myCar1;
+		assert iterator.next() == myCar2;
+		dependencies.remove(myCar2);
+		dependencies.remove(myCar1);
+		assert iterator.next() == myCar3;
+		assert !iterator.hasNext();
+	}
+
+	public void test003() {
+		Root root = new Root();
+		Generic car = root.addInstance("Car");
+		Generic power = car.addAttribute("Power");
+		Generic carCar = car.addRelation("CarCar", car);
+		Generic sportCar = root.addInstance(car, "SportCar");
+		Generic myCar = car.addInstance("myCar");
+
+		assert car.getInstances().stream().collect(Collectors.toList()).equals(Arrays.asList(myCar));
+		assert car.getInheritings().stream().collect(Collectors.toList()).equals(Arrays.asList(sportCar));
+		assert car.getComposites().stream().collect(Collectors.toList()).equals(Arrays.asList(power, carCar));
+		// A dependency linked to several indexes of an ancestor is returned once
+		assert root.getCurrentCache().getDependencies(car).stream().collect(Collectors.toList()).equals(Arrays.asList(myCar, sportCar, power, carCar));
+		assert root.getCurrentCache().getDependencies(car).get(carCar) == carCar;
+
+		carCar.remove();
+		assert car.getComposites().stream().collect(Collectors.toList()).equals(Arrays.asList(power));
+	}
+
+	public void test004() {
+		Root root = new Root();
+		Generic car = root.addInstance("Car");
+		Generic myCar1 = car.addInstance("myCar1");
+		Generic myCar2 = car.addInstance("myCar2");
+		Generic myCar3 = car.addInstance("myCar3");
+		Generic myCar4 = car.addInstance("myCar4");
+		Dependencies dependencies = root.getInstances(car);
+		long ts = root.getCurrentCache().getTs();
+
+		// An iteration positioned on a dependency removed then added again goes on
+		Iterator<Generic> iterator = dependencies.iterator(ts);
+		assert iterator.next() == myCar1;
+		assert iterator.next() == myCar2;
+		dependencies.remove(myCar2);
+		dependencies.add(myCar2);
+		assert iterator.next() == myCar3;
+		assert iterator.next() == myCar4;
+		assert !iterator.hasNext();
+		assert dependencies.stream(ts).collect(Collectors.toList()).equals(Arrays.asList(myCar1, myCar2, myCar3, myCar4));
+
+		// Its next removed too, it takes back its place before the first next still linked
+		dependencies.remove(myCar2);
+		dependencies.remove(myCar3);
+		dependencies.add(myCar2);
+		assert dependencies.stream(ts).collect(Collectors.toList()).equals(Arrays.asList(myCar1, myCar2, myCar4));
+		dependencies.remove(myCar1);
+		dependencies.add(myCar1);
+		assert dependencies.stream(ts).collect(Collectors.toList()).equals(Arrays.asList(myCar1, myCar2, myCar4));
+		dependencies.remove(myCar4);
+		dependencies.add(myCar3);
+		assert dependencies.stream(ts).collect(Collectors.toList()).equals(Arrays.asList(myCar1, myCar2, myCar3));
+		assert dependencies.get(myCar3, ts) == myCar3;
+		assert dependencies.remove(myCar3);
+		assert dependencies.stream(ts).collect(Collectors.toList()).equals(Arrays.asList(myCar1, myCar2));
+	}
+}
@@ -0,0 +1,42 @@
+package org.genericsystem.kernel;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+@Test
+public class GroupCommitTest extends AbstractTest {
+
+	public void test001() {
+		Root root = new Root();
+		Generic car = root.addInstance("Car");
+		Generic myCar = car.addInstance("myCar");
+		Generic myBike = car.addInstance("myBike");
+		Generic myTruck = car.addInstance("myTruck");
+
+		Transaction failing = new Transaction(root) {
+			@Override
+			protected void unplug(Generic generic) {
+				super.unplug(generic);
+				if (generic == myBike)
+					throw new IllegalStateException("Unplug failure");
+			}
+		};
+		Transaction transaction = new Transaction(root);
+		GroupCommit groupCommit = new GroupCommit(root);
+		GroupCommit.Commit failed = groupCommit.add(failing, Arrays.asList(myCar, myBike), Collections.emptyList());
+		GroupCommit.Commit applied = groupCommit.add(transaction, Collections.singletonList(myTruck), Collections.emptyList());
+		groupCommit.apply();
+
+		assert failed.getFailure() instanceof IllegalStateException : failed.getFailure();
+		assert applied.getFailure() == null : applied.getFailure();
+		assert myCar.getLifeManager().getDeathTs() == Long.MAX_VALUE;
+		assert myBike.getLifeManager().getDeathTs() == Long.MAX_VALUE;
+		Transaction reader = new Transaction(root);
+		assert reader.getInstances(car).size() == 2 : reader.getInstances(car).info();
+		assert reader.getInstances(car).get(myCar) != null;
+		assert reader.getInstances(car).get(myBike) != null;
+		assert reader.getInstances(car).get(myTruck) == null;
+	}
+}
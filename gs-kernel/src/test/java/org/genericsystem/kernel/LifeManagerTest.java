@@ -0,0 +1,67 @@
+package org.genericsystem.kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.genericsystem.api.core.exceptions.ConcurrencyControlException;
+import org.genericsystem.api.core.exceptions.OptimisticLockConstraintViolationException;
+import org.testng.annotations.Test;
+
+@Test
+public class LifeManagerTest extends AbstractTest {
+
+	public void test001() {
+		LifeManager lifeManager = new LifeManager(new long[] { 10L, 0L, Long.MAX_VALUE });
+		assert !lifeManager.isAlive(5L);
+		assert lifeManager.getLastReadTs() == 0L;
+		assert lifeManager.isAlive(20L);
+		assert lifeManager.getLastReadTs() == 20L;
+		assert lifeManager.isAlive(15L);
+		assert lifeManager.getLastReadTs() == 20L;
+	}
+
+	public void test002() throws Exception {
+		LifeManager lifeManager = new LifeManager(new long[] { 0L, 0L, Long.MAX_VALUE });
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int thread = 0; thread < 4; thread++) {
+			long offset = thread;
+			futures.add(executor.submit(() -> {
+				for (long ts = 1L; ts <= 10000L; ts++)
+					lifeManager.atomicAdjustLastReadTs(ts * 4 + offset);
+			}));
+		}
+		for (Future<?> future : futures)
+			future.get();
+		executor.shutdown();
+		assert lifeManager.getLastReadTs() == 10000L * 4 + 3;
+	}
+
+	public void test003() throws OptimisticLockConstraintViolationException {
+		LifeManager lifeManager = new LifeManager(new long[] { 10L, 0L, Long.MAX_VALUE });
+		lifeManager.writeLock();
+		try {
+			lifeManager.checkMvcc(20L);
+			lifeManager.kill(20L);
+		} finally {
+			lifeManager.writeUnlock();
+		}
+		assert lifeManager.isAlive(15L);
+		assert !lifeManager.isAlive(25L);
+	}
+
+	public void test004() throws OptimisticLockConstraintViolationException {
+		LifeManager lifeManager = new LifeManager(new long[] { 10L, 0L, Long.MAX_VALUE });
+		assert lifeManager.isAlive(30L);
+		lifeManager.writeLock();
+		try {
+			lifeManager.checkMvcc(20L);
+			assert false;
+		} catch (ConcurrencyControlException ignore) {} finally {
+			lifeManager.writeUnlock();
+		}
+	}
+}
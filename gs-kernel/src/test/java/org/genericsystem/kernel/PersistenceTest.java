@@ -1,11 +1,21 @@
 package org.genericsystem.kernel;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Random;
 
+import org.genericsystem.api.core.AxedPropertyClass;
 import org.genericsystem.api.core.annotations.SystemGeneric;
+import org.genericsystem.api.core.exceptions.RollbackException;
+import org.genericsystem.defaults.DefaultConfig.NoReferentialIntegrityProperty;
 import org.testng.annotations.Test;
 
 @Test
@@ -123,6 +133,261 @@ public class PersistenceTest extends AbstractTest {
 		compareGraph(root, new Root(Statics.ENGINE_VALUE, snapshot));
 	}
 
+	public void test010() {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot, new ArchiverPolicy().setPeriod(0L));
+		Generic vehicle = root.addInstance("Vehicle");
+		vehicle.addInstance("myCar");
+		root.snapshot();
+		vehicle.addInstance("myBike");
+		root.close();
+		assert new File(snapshot).listFiles((dir, name) -> name.endsWith(".gsd")).length == 1;
+		Root root2 = new Root(Statics.ENGINE_VALUE, snapshot);
+		compareGraph(root, root2);
+		assert root2.getInstance("Vehicle").getInstance("myBike") != null;
+	}
+
+	public void test011() {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot, new ArchiverPolicy().setPeriod(0L));
+		root.addInstance("Vehicle");
+		root.snapshot();
+		int filesCount = new File(snapshot).listFiles().length;
+		root.snapshot();
+		assert new File(snapshot).listFiles().length == filesCount;
+		root.close();
+	}
+
+	public void test012() {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot);
+		Generic type = root.addInstance("Type");
+		char[] chars = new char[70000];
+		Arrays.fill(chars, '\u00e9');
+		List<Serializable> values = Arrays.asList("Type", new String(chars), -1, Long.MIN_VALUE, (short) 12, 1.5d, -2.5f, true, false, Vehicle.class, int.class, new AxedPropertyClass(NoReferentialIntegrityProperty.class, 2));
+		for (Serializable value : values)
+			type.addInstance(value);
+		type.addInstance(new byte[] { 1, 2, 3 });
+		root.close();
+		Generic type2 = new Root(Statics.ENGINE_VALUE, snapshot).getInstance("Type");
+		assert type2.getInstances().size() == values.size() + 1;
+		for (Serializable value : values)
+			assert type2.getInstance(value) != null : value;
+		assert type2.getInstances().stream().anyMatch(instance -> instance.getValue() instanceof byte[] && Arrays.equals(new byte[] { 1, 2, 3 }, (byte[]) instance.getValue()));
+	}
+
+	public void test013() {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot);
+		Generic vehicle = root.addInstance("Vehicle");
+		Generic power = vehicle.addAttribute("Power");
+		int count = 100;
+		for (int i = 0; i < count; i++)
+			vehicle.addInstance("myVehicle" + i).addHolder(power, i);
+		root.close();
+		Root root2 = new Root(Statics.ENGINE_VALUE, snapshot);
+		Generic vehicle2 = root2.getInstance("Vehicle");
+		Generic power2 = vehicle2.getAttribute("Power");
+		assert vehicle2.getInstances().size() == count;
+		assert power2.getInstances().size() == count;
+		for (int i = 0; i < count; i++)
+			assert vehicle2.getInstance("myVehicle" + i).getValues(power2).contains(i);
+		root2.close();
+	}
+
+	public void test014() {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot, new ArchiverPolicy().setPeriod(0L));
+		Generic vehicle = root.addInstance("Vehicle");
+		Generic myCar = vehicle.addInstance("myCar");
+		long lastReadTs = myCar.getLifeManager().getLastReadTs();
+		root.snapshot();
+		assert new File(snapshot).listFiles((dir, name) -> name.endsWith(Archiver.getFileExtension())).length == 1;
+		assert myCar.getLifeManager().getLastReadTs() == lastReadTs;
+		myCar.remove();
+		root.close();
+		Root root2 = new Root(Statics.ENGINE_VALUE, snapshot);
+		compareGraph(root, root2);
+		assert root2.getInstance("Vehicle").getInstance("myCar") == null;
+	}
+
+	public void test015() {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot, new ArchiverPolicy().setCodec(Codec.LZ));
+		Generic vehicle = root.addInstance("Vehicle");
+		Generic power = vehicle.addAttribute("Power");
+		vehicle.addInstance("myCar").addHolder(power, 233);
+		root.close();
+		Root root2 = new Root(Statics.ENGINE_VALUE, snapshot);
+		compareGraph(root, root2);
+		assert root2.getInstance("Vehicle").getInstance("myCar").getValues(root2.getInstance("Vehicle").getAttribute("Power")).contains(233);
+	}
+
+	public void test016() throws IOException, ClassNotFoundException {
+		Root root = new Root(Statics.ENGINE_VALUE, Vehicle.class);
+		Generic vehicle = root.find(Vehicle.class);
+		Generic power = vehicle.addAttribute("Power");
+		Generic color = root.addInstance("Color");
+		Generic vehicleColor = vehicle.addRelation("VehicleColor", color);
+		Generic red = color.addInstance("red");
+		for (int i = 0; i < 100; i++)
+			vehicle.addInstance("myVehicle" + i).addHolder(power, i).getBaseComponent().addLink(vehicleColor, "myVehicleColor" + i, red);
+		Generic type = root.addInstance("Type");
+		List<Serializable> values = Arrays.asList(-1, Long.MIN_VALUE, (short) 12, 1.5d, Double.NaN, -2.5f, Float.POSITIVE_INFINITY, true, Vehicle.class, new AxedPropertyClass(NoReferentialIntegrityProperty.class, 2));
+		for (Serializable value : values)
+			type.addInstance(value);
+		type.addInstance(new byte[] { 1, 2, 3 });
+		ByteArrayOutputStream export = new ByteArrayOutputStream();
+		root.exportGraph(export);
+
+		Root root2 = new Root(Statics.ENGINE_VALUE, Vehicle.class);
+		root2.importGraph(new ByteArrayInputStream(export.toByteArray()));
+		assert root2.getCurrentCache().computeDependencies(root2).size() == root.getCurrentCache().computeDependencies(root).size();
+		Generic power2 = root2.find(Vehicle.class).getAttribute("Power");
+		for (int i = 0; i < 100; i++)
+			assert root2.find(Vehicle.class).getInstance("myVehicle" + i).getValues(power2).contains(i);
+		Generic type2 = root2.getInstance("Type");
+		for (Serializable value : values)
+			assert type2.getInstance(value) != null : value;
+		assert type2.getInstances().stream().anyMatch(instance -> instance.getValue() instanceof byte[] && Arrays.equals(new byte[] { 1, 2, 3 }, (byte[]) instance.getValue()));
+	}
+
+	public void test017() throws IOException, ClassNotFoundException {
+		Root root = new Root(Statics.ENGINE_VALUE);
+		Generic car = root.addInstance("Car");
+		Generic power = root.addInstance("Power");
+		car.addAttribute(power, "Power");
+		power.setInstanceValueClassConstraint(Integer.class);
+		car.addInstance("myCar").addHolder(power, 125);
+		ByteArrayOutputStream export = new ByteArrayOutputStream();
+		root.exportGraph(export);
+		String records = new String(export.toByteArray(), StandardCharsets.UTF_8).replace("\"type\":\"int\",\"value\":125", "\"type\":\"string\",\"value\":\"125\"");
+
+		Root root2 = new Root(Statics.ENGINE_VALUE);
+		int systemGenerics = root2.getSystemGenerics().size();
+		try {
+			root2.importGraph(new ByteArrayInputStream(records.getBytes(StandardCharsets.UTF_8)));
+			assert false;
+		} catch (RollbackException ignore) {}
+		assert root2.getInstance("Car") == null;
+		assert root2.getInstance("Power") == null;
+		assert root2.getSystemGenerics().size() == systemGenerics : root2.getSystemGenerics();
+	}
+
+	public void test018() throws IOException {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot);
+		root.addInstance("Vehicle");
+		root.close();
+		Root root2 = new Root(Statics.ENGINE_VALUE, snapshot);
+		root2.getInstance("Vehicle").addInstance("myCar");
+		root2.close();
+		try (RandomAccessFile file = new RandomAccessFile(lastSnapshot(snapshot), "rw")) {
+			file.seek(8);
+			int b = file.read();
+			file.seek(8);
+			file.write(b ^ 0xFF);
+		}
+		Root root3 = new Root(Statics.ENGINE_VALUE, snapshot);
+		compareGraph(root2, root3);
+		assert root3.getInstance("Vehicle").getInstance("myCar") != null;
+		root3.close();
+		compareGraph(root2, new Root(Statics.ENGINE_VALUE, snapshot));
+	}
+
+	public void test019() throws IOException {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot);
+		root.addInstance("Vehicle");
+		root.close();
+		Root root2 = new Root(Statics.ENGINE_VALUE, snapshot);
+		root2.getInstance("Vehicle").addInstance("myCar");
+		root2.close();
+		try (RandomAccessFile file = new RandomAccessFile(lastSnapshot(snapshot), "rw")) {
+			file.setLength(file.length() - 10);
+		}
+		Root root3 = new Root(Statics.ENGINE_VALUE, snapshot);
+		compareGraph(root2, root3);
+		assert root3.getInstance("Vehicle").getInstance("myCar") != null;
+		root3.close();
+	}
+
+	public void test020() throws IOException {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot);
+		root.addInstance("Vehicle");
+		root.close();
+		Root root2 = new Root(Statics.ENGINE_VALUE, snapshot);
+		root2.getInstance("Vehicle").addInstance("myCar");
+		root2.close();
+		for (File snapshotFile : new File(snapshot).listFiles((dir, name) -> name.endsWith(Archiver.getFileExtension())))
+			try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+				file.setLength(file.length() - 10);
+			}
+		try {
+			new Root(Statics.ENGINE_VALUE, snapshot);
+			assert false;
+		} catch (IllegalStateException ignore) {}
+	}
+
+	public void test021() throws IOException {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot, new ArchiverPolicy().setPeriod(0L));
+		Generic vehicle = root.addInstance("Vehicle");
+		vehicle.addInstance("myCar");
+		root.snapshot();
+		vehicle.addInstance("myBike");
+		root.close();
+		File[] deltas = new File(snapshot).listFiles((dir, name) -> name.endsWith(".gsd"));
+		assert deltas.length == 1;
+		try (RandomAccessFile file = new RandomAccessFile(deltas[0], "rw")) {
+			file.setLength(file.length() - 5);
+		}
+		Root root2 = new Root(Statics.ENGINE_VALUE, snapshot);
+		compareGraph(root, root2);
+		assert root2.getInstance("Vehicle").getInstance("myBike") != null;
+	}
+
+	public void test022() throws IOException {
+		String snapshot = cleanDirectory(directoryPath + new Random().nextInt());
+		Root root = new Root(Statics.ENGINE_VALUE, snapshot);
+		root.addInstance("Vehicle");
+		root.close();
+		// A datasource of the former serialized format is rejected, not started empty
+		for (File snapshotFile : new File(snapshot).listFiles((dir, name) -> name.endsWith(Archiver.getFileExtension())))
+			assert snapshotFile.renameTo(new File(snapshotFile.getAbsolutePath() + ".zip"));
+		try {
+			new Root(Statics.ENGINE_VALUE, snapshot);
+			assert false;
+		} catch (IllegalStateException e) {
+			assert e.getMessage().contains(".gs.zip") : e.getMessage();
+		}
+	}
+
+	public void test023() throws IOException, ClassNotFoundException {
+		Root root = new Root(Statics.ENGINE_VALUE);
+		root.addInstance("Car");
+		ByteArrayOutputStream export = new ByteArrayOutputStream();
+		root.exportGraph(export);
+
+		// The births are back-dated : a root that holds more than its system generics is rejected
+		Root root2 = new Root(Statics.ENGINE_VALUE);
+		root2.addInstance("Bike");
+		try {
+			root2.importGraph(new ByteArrayInputStream(export.toByteArray()));
+			assert false;
+		} catch (IllegalStateException ignore) {}
+		assert root2.getInstance("Car") == null;
+		assert root2.getInstance("Bike") != null;
+	}
+
+	private static File lastSnapshot(String directoryPath) {
+		File[] snapshots = new File(directoryPath).listFiles((dir, name) -> name.endsWith(Archiver.getFileExtension()));
+		assert snapshots.length == 2;
+		Arrays.sort(snapshots);
+		return snapshots[1];
+	}
+
 	private static String cleanDirectory(String directoryPath) {
 		File file = new File(directoryPath);
 		if (file.exists())
@@ -0,0 +1,48 @@
+package org.genericsystem.kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.genericsystem.kernel.Root.TsGenerator;
+import org.testng.annotations.Test;
+
+@Test
+public class TsGeneratorTest extends AbstractTest {
+
+	public void test001() {
+		TsGenerator generator = new TsGenerator();
+		long ts = generator.pickNewTs();
+		assert Math.abs(ts / Statics.MILLI_TO_NANOSECONDS - System.currentTimeMillis()) < 1000L : ts;
+		for (int i = 0; i < 100000; i++) {
+			long next = generator.pickNewTs();
+			assert next > ts;
+			ts = next;
+		}
+	}
+
+	public void test002() throws Exception {
+		TsGenerator generator = new TsGenerator();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<long[]>> futures = new ArrayList<>();
+		for (int thread = 0; thread < 4; thread++)
+			futures.add(executor.submit(() -> {
+				long[] ts = new long[10000];
+				for (int i = 0; i < ts.length; i++)
+					ts[i] = generator.pickNewTs();
+				return ts;
+			}));
+		List<Long> all = new ArrayList<>();
+		for (Future<long[]> future : futures) {
+			long[] ts = future.get();
+			for (int i = 0; i < ts.length; i++) {
+				assert i == 0 || ts[i] > ts[i - 1];
+				all.add(ts[i]);
+			}
+		}
+		executor.shutdown();
+		assert all.stream().distinct().count() == all.size();
+	}
+}
@@ -226,6 +226,26 @@ public class Cache implements DefaultContext<Generic>, ContextEventListener<org.
 		return () -> cache.getDependencies(unwrap(generic)).stream().map(this::wrap);
 	}
 
+	@Override
+	public Snapshot<Generic> getInstances(Generic generic) {
+		return () -> cache.getInstances(unwrap(generic)).stream().map(this::wrap);
+	}
+
+	@Override
+	public Snapshot<Generic> getInstances(Generic generic, Serializable value) {
+		return () -> cache.getInstances(unwrap(generic), value).stream().map(this::wrap);
+	}
+
+	@Override
+	public Snapshot<Generic> getInheritings(Generic generic) {
+		return () -> cache.getInheritings(unwrap(generic)).stream().map(this::wrap);
+	}
+
+	@Override
+	public Snapshot<Generic> getComposites(Generic generic) {
+		return () -> cache.getComposites(unwrap(generic)).stream().map(this::wrap);
+	}
+
 	@Override
 	public void discardWithException(Throwable exception) throws RollbackException {
 		cache.discardWithException(exception);
@@ -1,6 +1,8 @@
 package org.genericsystem.mutability;
 
 import java.util.Collections;
+import org.genericsystem.api.core.annotations.SystemGeneric;
+import org.genericsystem.api.core.annotations.ValueIndex;
 import org.testng.annotations.Test;
 
 @Test
@@ -34,6 +36,38 @@ public class MutabilityTest extends AbstractTest {
 		assert car.isAlive();// Aie, dependencies have been rebuilt and should be alive !
 	}
 
+	@SystemGeneric
+	@ValueIndex
+	public static class User {}
+
+	public void test005() {
+		Engine engine = new Engine(User.class);
+		Generic user = engine.find(User.class);
+		Generic login = user.addInstance("login");
+		assert user.getInstance("login") == login;
+		assert user.getInstances("login").size() == 1;
+		login.updateValue("login2");
+		assert user.getInstance("login") == null;
+		assert user.getInstance("login2") == login;
+		engine.getCurrentCache().flush();
+		assert user.getInstance("login2") == login;
+		assert user.getInstances().size() == 1;
+	}
+
+	public void test006() {
+		Engine engine = new Engine();
+		Generic vehicle = engine.addInstance("Vehicle");
+		Generic car = engine.addInstance(vehicle, "Car");
+		Generic power = car.addAttribute("Power");
+		Generic myCar = car.addInstance("myCar");
+		assert car.getInstances().size() == 1 && car.getInstances().contains(myCar);
+		assert vehicle.getInheritings().size() == 1 && vehicle.getInheritings().contains(car);
+		assert car.getComposites().size() == 1 && car.getComposites().contains(power);
+		vehicle.updateValue("Vehicle2");
+		assert vehicle.getInheritings().contains(car);
+		assert car.getInstances().contains(myCar);
+	}
+
 	public void test_fusion_then_mutation() {
 		Engine engine = new Engine();
 		Generic vehicle = engine.addInstance("Vehicle");